@@ -0,0 +1,212 @@
+package qwirkle;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A small benchmark harness in the style of JMH, for measuring the rules, AI and rendering.
+ * <p>
+ * Each benchmark is an Op, run in batches large enough to take about a millisecond.  The
+ * harness runs warmup iterations, then times the measured iterations and reports the mean
+ * time per op with its 99.9% confidence error.  Every op returns a value which is added to a
+ * volatile sink, so the JIT can't remove the work.
+ * <p>
+ * Usage: Bench [-wi warmups] [-i iterations] [-t millis] [-o file] [-b baseline [-r percent]] [regex]
+ * <ul>
+ * <li>regex - only run benchmarks whose names contain a match</li>
+ * <li>-o - save the results, to use as a baseline later</li>
+ * <li>-b - compare against saved results, and exit with status 1 if any benchmark is slower
+ * by more than the regression threshold (-r, default 10 percent)</li>
+ * </ul>
+ * @author Gabriel Stackhouse
+ *
+ */
+public class Bench {
+
+	/**
+	 * One invocation of the code being measured
+	 */
+	public interface Op {
+		long run();
+	}
+
+	//Student t values for a 99.9% confidence interval, by degrees of freedom (1 to 30)
+	private static final double[] T_999 = {
+		636.6, 31.60, 12.92, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+		4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850,
+		3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646
+	};
+
+	private static volatile long sink;
+
+	private int warmups = 5;
+	private int iterations = 10;
+	private long iterationNanos = 200 * 1000000L;
+	private Pattern filter;
+
+	private List<String> names = new ArrayList<String>();
+	private List<Op> ops = new ArrayList<Op>();
+
+	/**
+	 * Adds a benchmark to be run
+	 * @param name name of the benchmark
+	 * @param op code to measure
+	 */
+	public void add(String name, Op op) {
+		names.add(name);
+		ops.add(op);
+	}
+
+	public static void main(String[] args) throws IOException {
+		Bench bench = new Bench();
+		String output = null;
+		String baseline = null;
+		double threshold = 10;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-wi"))
+				bench.warmups = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-i"))
+				bench.iterations = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-t"))
+				bench.iterationNanos = Long.parseLong(args[++i]) * 1000000L;
+			else if (args[i].equals("-o"))
+				output = args[++i];
+			else if (args[i].equals("-b"))
+				baseline = args[++i];
+			else if (args[i].equals("-r"))
+				threshold = Double.parseDouble(args[++i]);
+			else
+				bench.filter = Pattern.compile(args[i]);
+		}
+
+		Benchmarks.addAll(bench);
+		Map<String, Double> results = bench.run();
+
+		if (output != null)
+			save(results, output);
+		if (baseline != null && !compare(results, load(baseline), threshold))
+			System.exit(1);
+	}
+
+	/**
+	 * Runs every benchmark that matches the filter, printing a line for each
+	 * @return mean nanoseconds per op of each benchmark, by name
+	 */
+	public Map<String, Double> run() {
+		Map<String, Double> results = new LinkedHashMap<String, Double>();
+		System.out.printf("%-40s %5s %12s %10s  %s%n", "Benchmark", "Cnt", "Score", "Error", "Units");
+		for (int b = 0; b < ops.size(); b++) {
+			String name = names.get(b);
+			if (filter != null && !filter.matcher(name).find())
+				continue;
+
+			double[] samples = measure(ops.get(b));
+			double mean = 0;
+			for (double sample : samples)
+				mean += sample;
+			mean /= samples.length;
+			double variance = 0;
+			for (double sample : samples)
+				variance += (sample - mean) * (sample - mean);
+			double error = 0;
+			if (samples.length > 1) {
+				double deviation = Math.sqrt(variance / (samples.length - 1));
+				error = T_999[Math.min(samples.length - 1, T_999.length) - 1] * deviation / Math.sqrt(samples.length);
+			}
+
+			System.out.printf("%-40s %5d %12.3f +- %8.3f  ns/op%n", name, samples.length, mean, error);
+			results.put(name, mean);
+		}
+		return results;
+	}
+
+	/**
+	 * Runs the warmup and measured iterations of a benchmark
+	 * @param op code to measure
+	 * @return nanoseconds per op of each measured iteration
+	 */
+	private double[] measure(Op op) {
+
+		//Find a batch size that takes about a millisecond
+		long batch = 1;
+		while (batch < (1L << 30) && time(op, batch) < 1000000L)
+			batch *= 2;
+
+		for (int i = 0; i < warmups; i++)
+			iteration(op, batch);
+
+		double[] samples = new double[iterations];
+		for (int i = 0; i < iterations; i++)
+			samples[i] = iteration(op, batch);
+		return samples;
+	}
+
+	/**
+	 * Runs batches for the length of an iteration
+	 * @return nanoseconds per op
+	 */
+	private double iteration(Op op, long batch) {
+		long elapsed = 0;
+		long count = 0;
+		while (elapsed < iterationNanos) {
+			elapsed += time(op, batch);
+			count += batch;
+		}
+		return elapsed / (double) count;
+	}
+
+	private static long time(Op op, long batch) {
+		long result = 0;
+		long start = System.nanoTime();
+		for (long i = 0; i < batch; i++)
+			result += op.run();
+		long elapsed = System.nanoTime() - start;
+		sink += result;
+		return elapsed;
+	}
+
+	private static void save(Map<String, Double> results, String file) throws IOException {
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8))) {
+			for (Map.Entry<String, Double> result : results.entrySet())
+				out.println(result.getKey() + " " + String.format(Locale.ROOT, "%.3f", result.getValue()));
+		}
+	}
+
+	private static Map<String, Double> load(String file) throws IOException {
+		Map<String, Double> results = new HashMap<String, Double>();
+		for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+			String[] parts = line.trim().split(" ");
+			if (parts.length == 2)
+				results.put(parts[0], Double.parseDouble(parts[1]));
+		}
+		return results;
+	}
+
+	/**
+	 * Prints the change of each benchmark from a baseline
+	 * @return false if any benchmark got slower by more than the threshold
+	 */
+	private static boolean compare(Map<String, Double> results, Map<String, Double> baseline, double threshold) {
+		boolean passed = true;
+		System.out.printf("%n%-40s %12s %12s %8s%n", "Benchmark", "Baseline", "Now", "Change");
+		for (Map.Entry<String, Double> result : results.entrySet()) {
+			Double before = baseline.get(result.getKey());
+			if (before == null)
+				continue;
+			double change = 100 * (result.getValue() - before) / before;
+			boolean regressed = change > threshold;
+			System.out.printf("%-40s %12.3f %12.3f %+7.1f%%%s%n", result.getKey(), before, result.getValue(), change, regressed ? "  REGRESSION" : "");
+			passed &= !regressed;
+		}
+		return passed;
+	}
+}
@@ -0,0 +1,151 @@
+package qwirkle;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.SplittableRandom;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.screen.Screen;
+import com.googlecode.lanterna.screen.TerminalScreen;
+import com.googlecode.lanterna.terminal.virtual.DefaultVirtualTerminal;
+
+/**
+ * The benchmarks of the rules, AI levels, deck and rendering, each run against the early,
+ * mid and late game fixtures
+ * @author Gabriel Stackhouse
+ *
+ */
+public class Benchmarks {
+
+	/**
+	 * Adds every benchmark to a harness
+	 * @param bench harness to add to
+	 */
+	public static void addAll(Bench bench) {
+		Fixture[] fixtures = Fixture.all();
+		for (Fixture fixture : fixtures)
+			addRules(bench, fixture);
+		for (Fixture fixture : fixtures)
+			addAi(bench, fixture);
+		addDeck(bench, fixtures);
+		for (Fixture fixture : fixtures)
+			addRender(bench, fixture);
+	}
+
+	private static void addRules(Bench bench, Fixture fixture) {
+		Board board = fixture.getBoard();
+		Hand hand = fixture.getHand();
+		int tilesPlaced = fixture.getTilesPlaced();
+		String name = fixture.getName();
+
+		//Cycles through the probes, one check per op
+		int[] next = new int[1];
+		bench.add("isValidMove." + name, () -> {
+			int i = next[0];
+			next[0] = i + 1 == fixture.getProbeCount() ? 0 : i + 1;
+			return hand.isValidMove(fixture.getProbeX(i), fixture.getProbeY(i), fixture.getProbeCode(i), board, tilesPlaced) ? 1 : 0;
+		});
+
+		MoveList moves = new MoveList();
+		bench.add("findMoves." + name, () -> hand.findMoves(0, hand.getHandLength() - 1, board, tilesPlaced, moves));
+
+		int[] cell = new int[1];
+		bench.add("getMoveScore." + name, () -> {
+			int i = cell[0];
+			cell[0] = i + 1 == board.getFrontierSize() ? 0 : i + 1;
+			return hand.getMoveScore(board.getFrontierX(i), board.getFrontierY(i), board);
+		});
+	}
+
+	private static void addAi(Bench bench, Fixture fixture) {
+		Board board = fixture.getBoard();
+		Hand hand = fixture.getHand();
+		int tilesPlaced = fixture.getTilesPlaced();
+		String name = fixture.getName();
+
+		bench.add("aiEasy." + name, () -> score(hand.aiEasy(board, tilesPlaced)));
+		bench.add("aiModerate." + name, () -> score(hand.aiModerate(board, tilesPlaced)));
+		bench.add("aiHard." + name, () -> {
+			Turn turn = hand.aiHard(board, tilesPlaced);
+			return turn == null ? 0 : turn.getScore();
+		});
+
+		//A cleared table every call, so a call can't reuse the last one's results
+		TranspositionTable table = new TranspositionTable(12);
+		ExpectimaxSearch search = new ExpectimaxSearch(ExpectimaxSearch.DEFAULT_DEPTH, 0, table);
+		int deckSize = fixture.getDeck().getSize();
+		bench.add("aiExpectimax." + name, () -> {
+			table.clear();
+			Turn turn = hand.aiExpectimax(board, tilesPlaced, deckSize, search);
+			return turn == null ? 0 : turn.getScore();
+		});
+	}
+
+	private static void addDeck(Bench bench, Fixture[] fixtures) {
+		SplittableRandom random = new SplittableRandom(1);
+		bench.add("deck.construct", () -> new Deck(random).getSize());
+
+		for (Fixture fixture : fixtures) {
+			Deck deck = fixture.getDeck();
+			String name = fixture.getName();
+			bench.add("deck.shuffle." + name, () -> {
+				deck.shuffle();
+				return deck.getSize();
+			});
+
+			//A draw followed by a return keeps the deck the same size.  The late deck is empty
+			if (!deck.isEmpty()) {
+				bench.add("deck.removeTile." + name, () -> {
+					int code = deck.removeTileCode();
+					deck.addTileCode(code);
+					return code;
+				});
+			}
+		}
+	}
+
+	private static void addRender(Bench bench, Fixture fixture) {
+		Board board = fixture.getBoard();
+		GameEngine game = fixture.getGame();
+		Screen screen;
+		try {
+			screen = new TerminalScreen(new DefaultVirtualTerminal(new TerminalSize(80, 24)));
+			screen.startScreen();
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		Renderer renderer = new Renderer(screen);
+		renderer.setGame(board, game.getHand(0), game.getHand(1), game.getDeck());
+		renderer.centerView((board.getMinX() + board.getMaxX()) / 2, (board.getMinY() + board.getMaxY()) / 2);
+		int code = fixture.getHand().getTileCode(0);
+
+		//Everything on screen, like the first frame of a game
+		bench.add("render.full." + fixture.getName(), () -> {
+			renderer.invalidate();
+			frame(renderer);
+			return board.getTileCount();
+		});
+
+		//The map cursor moving one cell, like a key press while placing a tile
+		int[] step = new int[1];
+		bench.add("render.cursor." + fixture.getName(), () -> {
+			step[0] = (step[0] + 1) & 15;
+			renderer.setMapCursor(renderer.getCenterX() + step[0] - 8, renderer.getCenterY(), code);
+			frame(renderer);
+			return step[0];
+		});
+	}
+
+	private static void frame(Renderer renderer) {
+		try {
+			renderer.frame();
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static long score(Move move) {
+		return move == null ? 0 : move.getScore();
+	}
+}
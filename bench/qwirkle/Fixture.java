@@ -0,0 +1,135 @@
+package qwirkle;
+
+/**
+ * A game stopped part of the way through, for benchmarks to run against.  Fixtures are played
+ * by two hard AIs from a fixed seed, so every run measures the same positions
+ * @author Gabriel Stackhouse
+ *
+ */
+public class Fixture {
+
+	private static final long SEED = 20170531L;
+
+	private String name;
+	private GameEngine game;
+
+	//Placements to check with isValidMove: every frontier cell with every tile in the hand,
+	//plus a few cells away from the tiles
+	private int[] probeX;
+	private int[] probeY;
+	private int[] probeCode;
+
+	private Fixture(String name, GameEngine game) {
+		this.name = name;
+		this.game = game;
+		makeProbes();
+	}
+
+	/**
+	 * A few turns into the game, with a handful of tiles on the board
+	 */
+	public static Fixture early() {
+		return play("early", 4);
+	}
+
+	/**
+	 * About half the deck drawn
+	 */
+	public static Fixture mid() {
+		return play("mid", 16);
+	}
+
+	/**
+	 * The deck is empty and the board is close to full
+	 */
+	public static Fixture late() {
+		GameEngine game = new GameEngine(new AiPlayer(AiPlayer.HARD), new AiPlayer(AiPlayer.HARD), SEED);
+		while (!game.getDeck().isEmpty() && !game.isGameOver())
+			game.playTurn();
+		return new Fixture("late", game);
+	}
+
+	public static Fixture[] all() {
+		return new Fixture[] {early(), mid(), late()};
+	}
+
+	private static Fixture play(String name, int turns) {
+		GameEngine game = new GameEngine(new AiPlayer(AiPlayer.HARD), new AiPlayer(AiPlayer.HARD), SEED);
+		for (int i = 0; i < turns && !game.isGameOver(); i++)
+			game.playTurn();
+		return new Fixture(name, game);
+	}
+
+	private void makeProbes() {
+		Board board = getBoard();
+		Hand hand = getHand();
+		int far = 4;
+		int count = (board.getFrontierSize() + far) * hand.getHandLength();
+		probeX = new int[count];
+		probeY = new int[count];
+		probeCode = new int[count];
+
+		int p = 0;
+		for (int c = 0; c < board.getFrontierSize() + far; c++) {
+			int x, y;
+			if (c < board.getFrontierSize()) {
+				x = board.getFrontierX(c);
+				y = board.getFrontierY(c);
+			}
+			else {
+				x = board.getMaxX() + 2 + c;
+				y = board.getMinY() - 2 - c;
+			}
+			for (int i = 0; i < hand.getHandLength(); i++) {
+				probeX[p] = x;
+				probeY[p] = y;
+				probeCode[p] = hand.getTileCode(i);
+				p++;
+			}
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public GameEngine getGame() {
+		return game;
+	}
+
+	public Board getBoard() {
+		return game.getBoard();
+	}
+
+	/**
+	 * Returns the hand of the player whose turn it is
+	 * @return hand
+	 */
+	public Hand getHand() {
+		return game.getHand(game.getCurrentPlayer());
+	}
+
+	public Deck getDeck() {
+		return game.getDeck();
+	}
+
+	public int getTilesPlaced() {
+		return game.getTilesPlaced();
+	}
+
+	public int getProbeCount() {
+		return probeX.length;
+	}
+
+	public int getProbeX(int i) {
+		return probeX[i];
+	}
+
+	public int getProbeY(int i) {
+		return probeY[i];
+	}
+
+	public int getProbeCode(int i) {
+		return probeCode[i];
+	}
+}
@@ -0,0 +1,54 @@
+package qwirkle;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one AI turn, from the moment the AI starts choosing to its
+ * answer.  Recorded by AiPlayer
+ * @author Gabriel Stackhouse
+ *
+ */
+@Name("qwirkle.AiTurn")
+@Label("AI Turn")
+@Category({"Qwirkle", "AI"})
+@Description("An AI choosing its turn")
+@StackTrace(false)
+public class AiTurnEvent extends jdk.jfr.Event implements Tracing.AiTurn {
+
+	@Label("Strategy")
+	@Description("AI level: Easy, Moderate, Hard, Expert or Master")
+	String strategy;
+
+	@Label("Candidates")
+	@Description("Cells (Easy, Moderate), turns (Hard), positions (Expert) or playouts (Master) examined.  A Master turn with nothing to choose between counts its 0 or 1 turns")
+	long candidates;
+
+	@Label("Turn")
+	@Description("Tiles placed, as X,Y,TILE for each, empty if the AI couldn't place a tile")
+	String turn;
+
+	@Label("Score")
+	int score;
+
+	@Label("Depth")
+	@Description("Turns looked ahead, counting the AI's own")
+	int depth;
+
+	@Label("Tiles Placed")
+	@Description("Tiles on the board when the turn started")
+	int tilesPlaced;
+
+	@Override
+	public void record(String strategy, long candidates, int depth, String turn, int score, int tilesPlaced) {
+		this.strategy = strategy;
+		this.candidates = candidates;
+		this.depth = depth;
+		this.turn = turn;
+		this.score = score;
+		this.tilesPlaced = tilesPlaced;
+		commit();
+	}
+}
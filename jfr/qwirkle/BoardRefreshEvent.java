@@ -0,0 +1,37 @@
+package qwirkle;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a frame that redrew the whole board view, such as after the
+ * board scrolls or a turn is played.  Recorded by Renderer
+ * @author Gabriel Stackhouse
+ *
+ */
+@Name("qwirkle.BoardRefresh")
+@Label("Board Refresh")
+@Category({"Qwirkle", "Rendering"})
+@Description("Drawing every cell of the board view and refreshing the screen")
+@StackTrace(false)
+public class BoardRefreshEvent extends jdk.jfr.Event implements Tracing.BoardRefresh {
+
+	@Label("Cells Drawn")
+	@Description("Cells that had changed and were drawn again")
+	int cellsDrawn;
+
+	@Label("Refreshed")
+	@Description("True if anything changed and the screen was refreshed")
+	boolean refreshed;
+
+	@Override
+	public void record(int cellsDrawn, boolean refreshed) {
+		if (shouldCommit()) {
+			this.cellsDrawn = cellsDrawn;
+			this.refreshed = refreshed;
+			commit();
+		}
+	}
+}
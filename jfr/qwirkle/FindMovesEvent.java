@@ -0,0 +1,40 @@
+package qwirkle;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one call of Hand.findMoves
+ * @author Gabriel Stackhouse
+ *
+ */
+@Name("qwirkle.FindMoves")
+@Label("Find Moves")
+@Category({"Qwirkle", "Rules"})
+@Description("Finding the one-tile moves of a hand")
+@StackTrace(false)
+public class FindMovesEvent extends jdk.jfr.Event implements Tracing.FindMoves {
+
+	@Label("Candidates")
+	@Description("Cells looked at")
+	int candidates;
+
+	@Label("Moves")
+	@Description("Moves found")
+	int moves;
+
+	@Label("Tiles Placed")
+	int tilesPlaced;
+
+	@Override
+	public void record(int candidates, int moves, int tilesPlaced) {
+		if (shouldCommit()) {
+			this.candidates = candidates;
+			this.moves = moves;
+			this.tilesPlaced = tilesPlaced;
+			commit();
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package qwirkle;
+import jdk.jfr.EventType;
+
+/**
+ * Records the engine's tracing hooks as Flight Recorder events.  Needs Java 11 or later;
+ * Tracing loads it by name when it is on the classpath
+ * @author Gabriel Stackhouse
+ *
+ */
+public class JfrTracing extends Tracing {
+
+	private static final EventType AI_TURN = EventType.getEventType(AiTurnEvent.class);
+	private static final EventType FIND_MOVES = EventType.getEventType(FindMovesEvent.class);
+	private static final EventType BOARD_REFRESH = EventType.getEventType(BoardRefreshEvent.class);
+
+	public JfrTracing() {
+	}
+
+	@Override
+	public AiTurn beginAiTurn() {
+		if (!AI_TURN.isEnabled())
+			return null;
+		AiTurnEvent event = new AiTurnEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public FindMoves beginFindMoves() {
+		if (!FIND_MOVES.isEnabled())
+			return null;
+		FindMovesEvent event = new FindMovesEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public BoardRefresh beginBoardRefresh() {
+		if (!BOARD_REFRESH.isEnabled())
+			return null;
+		BoardRefreshEvent event = new BoardRefreshEvent();
+		event.begin();
+		return event;
+	}
+}
@@ -0,0 +1,196 @@
+package qwirkle;
+
+/**
+ * A computer player using one of the AI levels in Hand
+ * @author Gabriel Stackhouse
+ *
+ */
+public class AiPlayer implements Player {
+
+	public static final int EASY = 0;
+	public static final int MODERATE = 1;
+	public static final int HARD = 2;
+	public static final int EXPERT = 3;
+	public static final int MASTER = 4;
+
+	private int difficulty;
+	private ExpectimaxSearch search;
+	private MonteCarloSearch monteCarlo;
+
+	/**
+	 * @param difficulty EASY, MODERATE, HARD, EXPERT or MASTER
+	 */
+	public AiPlayer(int difficulty) {
+		this.difficulty = difficulty;
+		if (difficulty == EXPERT)
+			search = new ExpectimaxSearch();
+		else if (difficulty == MASTER)
+			monteCarlo = new MonteCarloSearch();
+	}
+
+	/**
+	 * Constructs an Expert AI with its own search settings
+	 * @param search search to use
+	 */
+	public AiPlayer(ExpectimaxSearch search) {
+		this.difficulty = EXPERT;
+		this.search = search;
+	}
+
+	/**
+	 * Constructs a Master AI with its own search settings
+	 * @param monteCarlo search to use
+	 */
+	public AiPlayer(MonteCarloSearch monteCarlo) {
+		this.difficulty = MASTER;
+		this.monteCarlo = monteCarlo;
+	}
+
+	public int getDifficulty() {
+		return difficulty;
+	}
+
+	@Override
+	public Turn chooseTurn(GameEngine game, Hand hand) {
+		Hand opponent = game.getHand(game.getCurrentPlayer() == 0 ? 1 : 0);
+		return chooseTurn(hand, game.getBoard(), game.getTilesPlaced(), game.getDeck().getSize(),
+				opponent.getHandSize());
+	}
+
+	/**
+	 * Chooses the tiles to place in a position given outside of a GameEngine
+	 * @param hand the AI's hand
+	 * @param board game board
+	 * @param tilesPlaced number of tiles placed
+	 * @param deckSize number of tiles left in the deck
+	 * @param opponentTiles number of tiles in the opponent's hand
+	 * @return turn to play, with its score, null if no tile can be placed
+	 */
+	public Turn chooseTurn(Hand hand, Board board, int tilesPlaced, int deckSize, int opponentTiles) {
+		Tracing.AiTurn event = Tracing.INSTANCE.beginAiTurn();
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		Turn turn = choose(hand, board, tilesPlaced, deckSize, opponentTiles);
+		if (Metrics.ENABLED)
+			Metrics.aiTurn(difficulty, start);
+		if (event != null && event.shouldCommit())
+			commit(event, turn, hand, board, tilesPlaced);
+		return turn;
+	}
+
+	/**
+	 * Fills in what the search looked at and records the event
+	 */
+	private void commit(Tracing.AiTurn event, Turn turn, Hand hand, Board board, int tilesPlaced) {
+		record(event, turn, getCandidates(turn, hand, board), getDepth(), tilesPlaced);
+	}
+
+	/**
+	 * Returns what the last choice looked at: frontier cells for Easy and Moderate, turns for
+	 * Hard, positions for Expert and playouts for Master
+	 * @param turn turn chosen
+	 * @param hand hand it was chosen from
+	 * @param board board it was chosen on
+	 */
+	long getCandidates(Turn turn, Hand hand, Board board) {
+		if (difficulty == EASY || difficulty == MODERATE)
+			return board.getFrontierSize();
+		else if (difficulty == HARD)
+			return hand.getTurnsGenerated();
+		else if (difficulty == EXPERT)
+			return search.getNodes();
+		else if (monteCarlo.getPlayouts() > 0)
+			return monteCarlo.getPlayouts();
+
+		//No turn, or only one, so nothing was played out
+		return turn == null ? 0 : 1;
+	}
+
+	/**
+	 * Returns how many turns ahead the last choice looked, counting its own
+	 */
+	int getDepth() {
+		if (difficulty == EXPERT)
+			return search.getDepthReached();
+		if (difficulty == MASTER && monteCarlo.getPlayouts() > 0)
+			return 1 + MonteCarloSearch.PLAYOUT_TURNS;
+		return 1;
+	}
+
+	/**
+	 * Records an AI turn event for a turn chosen by this AI
+	 */
+	void record(Tracing.AiTurn event, Turn turn, long candidates, int depth, int tilesPlaced) {
+		StringBuilder tiles = new StringBuilder();
+		for (int i = 0; turn != null && i < turn.size(); i++) {
+			if (i > 0)
+				tiles.append(' ');
+			tiles.append(turn.getX(i)).append(',').append(turn.getY(i)).append(',').append(TileCode.name(turn.getTileCode(i)));
+		}
+		event.record(toString(), candidates, depth, tiles.toString(), turn == null ? 0 : turn.getScore(), tilesPlaced);
+	}
+
+	/**
+	 * Chooses a turn like chooseTurn, but without counting it in the metrics or recording
+	 * it, for searches whose turn may never be played
+	 */
+	Turn choose(Hand hand, Board board, int tilesPlaced, int deckSize, int opponentTiles) {
+		Move move;
+		if (difficulty == EASY)
+			move = hand.aiEasy(board, tilesPlaced);
+		else if (difficulty == MODERATE)
+			move = hand.aiModerate(board, tilesPlaced);
+		else if (difficulty == HARD)
+			return hand.aiHard(board, tilesPlaced);
+		else if (difficulty == EXPERT)
+			return hand.aiExpectimax(board, tilesPlaced, deckSize, search);
+		else
+			return hand.aiMonteCarlo(board, tilesPlaced, deckSize, opponentTiles, monteCarlo);
+
+		if (move == null)
+			return null;
+		return new Turn(move);
+	}
+
+	/**
+	 * Stops a search the AI is running on another thread, so that it answers at once with
+	 * its best turn so far.  Only the Expert and Master AIs search for long
+	 */
+	public void stop() {
+		if (search != null)
+			search.stop();
+		if (monteCarlo != null)
+			monteCarlo.stop();
+	}
+
+	/**
+	 * Swaps as much of the hand as the deck allows when no tile can be played
+	 */
+	@Override
+	public boolean[] chooseSwap(GameEngine game, Hand hand) {
+		int available = game.getDeck().getSize();
+		if (available == 0)
+			return null;
+
+		boolean[] toSwap = new boolean[hand.getHandLength()];
+		for (int i = 0; i < toSwap.length && available > 0; i++) {
+			if (hand.getTileCode(i) != TileCode.EMPTY) {
+				toSwap[i] = true;
+				available--;
+			}
+		}
+		return toSwap;
+	}
+
+	public String toString() {
+		if (difficulty == EASY)
+			return "Easy";
+		else if (difficulty == MODERATE)
+			return "Moderate";
+		else if (difficulty == HARD)
+			return "Hard";
+		else if (difficulty == EXPERT)
+			return "Expert";
+		else
+			return "Master";
+	}
+}
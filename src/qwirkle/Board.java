@@ -1,33 +1,160 @@
 package qwirkle;
 
 import java.awt.Color;
+import java.util.Arrays;
 
+/**
+ * The game board.  The board has no edges, so it is stored sparsely: cells live in square
+ * chunks that are only created once a tile is placed in or next to them.  Coordinates may be
+ * negative, but must stay between -32768 and 32767.
+ * @author Gabriel Stackhouse
+ *
+ */
 public class Board {
-	
-	private int xMax = 80;
-	private int yMax = 21;
 
-	private Tile[][] board = new Tile[yMax][xMax];
-	
-	/** 
-	 * Constructs a board of initial null values
+	//Chunks are CHUNK_SIZE x CHUNK_SIZE cells
+	private static final int CHUNK_BITS = 4;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	//Marks an unused slot in the chunk table.  Can't be the key of a real chunk
+	private static final int NO_KEY = Integer.MIN_VALUE;
+
+	//Longest possible line of tiles
+	private static final int LINE_LIMIT = 6;
+
+	//Values recorded in the undo journal.  The first group are arrays in a chunk, the rest
+	//belong to the board
+	private static final int TILES = 0;
+	private static final int FRONTIER_POS = 1;
+	private static final int OCCUPIED_POS = 2;
+	private static final int LEGAL = 3;
+	private static final int ROW_START = 4;
+	private static final int ROW_END = 5;
+	private static final int COLUMN_START = 6;
+	private static final int COLUMN_END = 7;
+	private static final int FRONTIER = 8;
+	private static final int OCCUPIED = 9;
+	private static final int FRONTIER_SIZE = 10;
+	private static final int TILE_COUNT = 11;
+	private static final int MIN_X = 12;
+	private static final int MAX_X = 13;
+	private static final int MIN_Y = 14;
+	private static final int MAX_Y = 15;
+	private static final int HASH_KEY = 16;
+
+	/**
+	 * A square of cells on the board
+	 */
+	private static class Chunk {
+
+		//Index in chunkList
+		int id;
+
+		//Tile codes (see TileCode)
+		int[] tiles = new int[CHUNK_SIZE * CHUNK_SIZE];
+
+		//Index of the cell in frontier/occupied plus one, 0 if it isn't in the list
+		int[] frontierPos = new int[CHUNK_SIZE * CHUNK_SIZE];
+		int[] occupiedPos = new int[CHUNK_SIZE * CHUNK_SIZE];
+
+		//Bit mask of the tile kinds (see TileCode.bit) that may legally be placed in each frontier cell,
+		//0 for cells that aren't in the frontier
+		long[] legal = new long[CHUNK_SIZE * CHUNK_SIZE];
+
+		//First and last x of the row of tiles through each placed tile, and the same in y
+		//for its column.  Only meaningful for cells with a tile on them
+		int[] rowStart = new int[CHUNK_SIZE * CHUNK_SIZE];
+		int[] rowEnd = new int[CHUNK_SIZE * CHUNK_SIZE];
+		int[] columnStart = new int[CHUNK_SIZE * CHUNK_SIZE];
+		int[] columnEnd = new int[CHUNK_SIZE * CHUNK_SIZE];
+	}
+
+	//Open addressing hash table of chunks, keyed by cellKey(chunkX, chunkY)
+	private int[] chunkKeys = new int[16];
+	private Chunk[] chunks = new Chunk[16];
+	private int chunkCount = 0;
+
+	//Most recently used chunk, since lookups tend to stay in one area
+	private int lastKey = NO_KEY;
+	private Chunk lastChunk = null;
+
+	//Frontier: empty cells orthogonally next to a placed tile, stored as cell keys
+	private int[] frontier = new int[64];
+	private int frontierSize = 0;
+
+	//Cells with a tile on them, stored as cell keys
+	private int[] occupied = new int[64];
+	private int tileCount = 0;
+
+	//Bounding box of the placed tiles
+	private int minX, maxX, minY, maxY;
+
+	//Zobrist key of the placed tiles (see Zobrist)
+	private long hashKey = 0;
+
+	//Every chunk, by id, so the journal can refer to them
+	private Chunk[] chunkList = new Chunk[16];
+
+	//Undo journal: what each change made by makeMove wrote over, so unmakeMove can put back
+	//exactly what was there.  Entries are (where, old value), with where made by journalKey
+	private int[] undoWhere = new int[256];
+	private long[] undoValue = new long[256];
+	private int undoSize = 0;
+
+	//Journal size at the start of each move that hasn't been unmade
+	private int[] moveStart = new int[16];
+	private int moveDepth = 0;
+
+	/**
+	 * Constructs an empty board
 	 */
 	public Board() {
-		for (int i = 0; i < xMax; i++) {
-			for (int j = 0; j < yMax; j++) {
-				board[j][i] = null;
-			}
+		for (int i = 0; i < chunkKeys.length; i++)
+			chunkKeys[i] = NO_KEY;
+	}
+
+	/**
+	 * Constructs a board with the same tiles as another, so an AI can search on its own copy
+	 * @param other board to copy
+	 */
+	public Board(Board other) {
+		this();
+		for (int i = 0; i < other.tileCount; i++) {
+			int x = other.getTileX(i);
+			int y = other.getTileY(i);
+			placeTileCode(other.getTileCode(x, y), x, y);
 		}
 	}
-	
+
+	/**
+	 * Packs a cell position into a single int
+	 * @param x x index
+	 * @param y y index
+	 * @return cell key
+	 */
+	public static int cellKey(int x, int y) {
+		return (x << 16) | (y & 0xFFFF);
+	}
+
+	/**
+	 * Returns the x position of a cell key
+	 * @param key cell key
+	 * @return x index
+	 */
+	public static int cellX(int key) {
+		return key >> 16;
+	}
+
 	/**
-	 * Returns the board array
-	 * @return board array
+	 * Returns the y position of a cell key
+	 * @param key cell key
+	 * @return y index
 	 */
-	public Tile[][] getBoard() {
-		return board;
+	public static int cellY(int key) {
+		return (short) key;
 	}
-	
+
 	/**
 	 * Returns tile from board without removing it
 	 * @param x - x parameter
@@ -35,11 +162,22 @@ public class Board {
 	 * @return - tile specified, null if no tile
 	 */
 	public Tile getTile(int x, int y) {
-		if (x < 0 || x >= xMax || y < 0 || y >= xMax)
-			return null;
-		return board[y][x];
+		return Tile.of(getTileCode(x, y));
+	}
+
+	/**
+	 * Returns code of the tile on the board without removing it
+	 * @param x - x parameter
+	 * @param y - y parameter
+	 * @return - tile code, TileCode.EMPTY if no tile
+	 */
+	public int getTileCode(int x, int y) {
+		Chunk chunk = getChunk(x, y, false);
+		if (chunk == null)
+			return TileCode.EMPTY;
+		return chunk.tiles[cellIndex(x, y)];
 	}
-	
+
 	/**
 	 * Removes tile from board
 	 * @param x - x parameter
@@ -47,21 +185,52 @@ public class Board {
 	 * @return - tile removed, null if no tile
 	 */
 	public Tile removeTile(int x, int y) {
-		if (x < 0 || x >= xMax || y < 0 || y >= xMax)
-			return null;
-		Tile result = board[y][x];
-		board[y][x] = null;
+		return Tile.of(removeTileCode(x, y));
+	}
+
+	/**
+	 * Removes tile from board
+	 * @param x - x parameter
+	 * @param y - y parameter
+	 * @return - code of tile removed, TileCode.EMPTY if no tile
+	 */
+	public int removeTileCode(int x, int y) {
+		Chunk chunk = getChunk(x, y, false);
+		if (chunk == null)
+			return TileCode.EMPTY;
+		int index = cellIndex(x, y);
+		int result = chunk.tiles[index];
+		if (result == TileCode.EMPTY)
+			return TileCode.EMPTY;
+		setChunkValue(chunk, TILES, index, TileCode.EMPTY);
+		updateHashKey(x, y, result);
+		removeFromOccupied(chunk, index);
+		splitRuns(x, y);
+
+		//Shrink bounding box if the tile was on its edge
+		if (x == minX || x == maxX || y == minY || y == maxY)
+			updateBounds();
+
+		//Update frontier and legal masks
+		if (hasNeighbor(x, y))
+			addToFrontier(x, y);
+		updateFrontier(x - 1, y);
+		updateFrontier(x + 1, y);
+		updateFrontier(x, y - 1);
+		updateFrontier(x, y + 1);
+		updateLegal(x, y);
+		updateLineEnds(x, y);
 		return result;
 	}
-	
+
 	public char getTileSymbol(int x, int y) {
-		return board[y][x].getSymbol();
+		return TileCode.symbol(getTileCode(x, y));
 	}
-	
+
 	public Color getTileColor(int x, int y) {
-		return board[y][x].getColor();
+		return TileCode.awtColor(getTileCode(x, y));
 	}
-	
+
 	/**
 	 * Place a tile on the board
 	 * @param tile tile to be placed
@@ -69,14 +238,682 @@ public class Board {
 	 * @param y y index
 	 */
 	public void placeTile(Tile tile, int x, int y) {
-		board[y][x] = tile;
+		placeTileCode(Tile.codeOf(tile), x, y);
+	}
+
+	/**
+	 * Place a tile on the board, replacing any tile already there
+	 * @param code code of tile to be placed, TileCode.EMPTY clears the cell
+	 * @param x x index
+	 * @param y y index
+	 */
+	public void placeTileCode(int code, int x, int y) {
+		removeTileCode(x, y);
+		if (code == TileCode.EMPTY)
+			return;
+
+		Chunk chunk = getChunk(x, y, true);
+		int index = cellIndex(x, y);
+		setChunkValue(chunk, TILES, index, code);
+		updateHashKey(x, y, code);
+		addToOccupied(chunk, index, cellKey(x, y));
+		joinRuns(x, y);
+
+		//Grow bounding box
+		if (tileCount == 1)
+			setBounds(x, x, y, y);
+		else
+			setBounds(Math.min(minX, x), Math.max(maxX, x), Math.min(minY, y), Math.max(maxY, y));
+
+		//Update frontier and legal masks
+		removeFromFrontier(x, y);
+		updateFrontier(x - 1, y);
+		updateFrontier(x + 1, y);
+		updateFrontier(x, y - 1);
+		updateFrontier(x, y + 1);
+		updateLineEnds(x, y);
+	}
+
+	/**
+	 * Places a tile so that it can be taken back with unmakeMove.  Nothing is allocated once
+	 * the journal has grown to the deepest search, so AI lookahead can make and unmake moves
+	 * millions of times.  While moves are made, placeTile and removeTile are also journaled,
+	 * and are undone along with the last move
+	 * @param code code of tile to be placed
+	 * @param x x index
+	 * @param y y index
+	 */
+	public void makeMove(int code, int x, int y) {
+		if (moveDepth == moveStart.length)
+			moveStart = Arrays.copyOf(moveStart, moveStart.length * 2);
+		moveStart[moveDepth++] = undoSize;
+		placeTileCode(code, x, y);
+	}
+
+	/**
+	 * Takes back the last move made with makeMove.  The frontier and list of tiles are put
+	 * back in the same order, and every mask and run exactly as they were
+	 */
+	public void unmakeMove() {
+		if (moveDepth == 0)
+			return;
+		int start = moveStart[--moveDepth];
+		while (undoSize > start) {
+			undoSize--;
+			restore(undoWhere[undoSize], undoValue[undoSize]);
+		}
+	}
+
+	/**
+	 * Returns the number of moves made with makeMove that haven't been unmade
+	 * @return number of moves
+	 */
+	public int getMoveDepth() {
+		return moveDepth;
+	}
+
+	public boolean isEmpty() {
+		return tileCount == 0;
+	}
+
+	/**
+	 * Returns the Zobrist key of the tiles on the board, kept up to date as tiles are placed
+	 * and removed.  Boards with the same tiles in the same cells have the same key, however
+	 * they got there
+	 * @return board key
+	 */
+	public long getHashKey() {
+		return hashKey;
+	}
+
+	/**
+	 * Returns the number of tiles on the board
+	 * @return number of tiles
+	 */
+	public int getTileCount() {
+		return tileCount;
+	}
+
+	/**
+	 * Returns the x position of a placed tile
+	 * @param index index of the tile (must be between 0 and getTileCount() - 1)
+	 * @return x position
+	 */
+	public int getTileX(int index) {
+		return cellX(occupied[index]);
+	}
+
+	/**
+	 * Returns the y position of a placed tile
+	 * @param index index of the tile (must be between 0 and getTileCount() - 1)
+	 * @return y position
+	 */
+	public int getTileY(int index) {
+		return cellY(occupied[index]);
+	}
+
+	/**
+	 * Bounding box of the placed tiles.  Only meaningful if the board isn't empty
+	 * @return smallest x position of a tile
+	 */
+	public int getMinX() {
+		return minX;
+	}
+
+	public int getMaxX() {
+		return maxX;
+	}
+
+	public int getMinY() {
+		return minY;
+	}
+
+	public int getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * Returns the number of empty cells that are next to a placed tile
+	 * @return size of the frontier
+	 */
+	public int getFrontierSize() {
+		return frontierSize;
+	}
+
+	/**
+	 * Returns the x position of a frontier cell
+	 * @param index index into the frontier (must be between 0 and getFrontierSize() - 1)
+	 * @return x position
+	 */
+	public int getFrontierX(int index) {
+		return cellX(frontier[index]);
+	}
+
+	/**
+	 * Returns the y position of a frontier cell
+	 * @param index index into the frontier (must be between 0 and getFrontierSize() - 1)
+	 * @return y position
+	 */
+	public int getFrontierY(int index) {
+		return cellY(frontier[index]);
+	}
+
+	/**
+	 * Checks if an empty cell is next to a placed tile
+	 * @param x x index
+	 * @param y y index
+	 * @return true if cell is in the frontier
+	 */
+	public boolean isFrontier(int x, int y) {
+		Chunk chunk = getChunk(x, y, false);
+		return chunk != null && chunk.frontierPos[cellIndex(x, y)] != 0;
+	}
+
+	/**
+	 * Returns a bit mask of the tile kinds (see TileCode.bit) that may legally be placed
+	 * in a cell
+	 * @param x x index
+	 * @param y y index
+	 * @return bit mask, 0 if the cell is not in the frontier
+	 */
+	public long getLegalMask(int x, int y) {
+		Chunk chunk = getChunk(x, y, false);
+		if (chunk == null)
+			return 0;
+		return chunk.legal[cellIndex(x, y)];
+	}
+
+	/**
+	 * Returns a bit mask of the tile kinds that may legally be placed in a frontier cell
+	 * @param index index into the frontier (must be between 0 and getFrontierSize() - 1)
+	 * @return bit mask
+	 */
+	public long getFrontierMask(int index) {
+		int key = frontier[index];
+		return getLegalMask(cellX(key), cellY(key));
+	}
+
+	/**
+	 * Returns the first position of the line of tiles through a placed tile
+	 * @param x x index
+	 * @param y y index
+	 * @param dx 1 for the row
+	 * @param dy 1 for the column
+	 * @return x of the first tile in the row, or y of the first tile in the column.
+	 *         Only meaningful if there is a tile at (x, y)
+	 */
+	public int getRunStart(int x, int y, int dx, int dy) {
+		Chunk chunk = getChunk(x, y, false);
+		if (chunk == null)
+			return dx == 1 ? x : y;
+		return dx == 1 ? chunk.rowStart[cellIndex(x, y)] : chunk.columnStart[cellIndex(x, y)];
+	}
+
+	/**
+	 * Returns the last position of the line of tiles through a placed tile
+	 * @param x x index
+	 * @param y y index
+	 * @param dx 1 for the row
+	 * @param dy 1 for the column
+	 * @return x of the last tile in the row, or y of the last tile in the column.
+	 *         Only meaningful if there is a tile at (x, y)
+	 */
+	public int getRunEnd(int x, int y, int dx, int dy) {
+		Chunk chunk = getChunk(x, y, false);
+		if (chunk == null)
+			return dx == 1 ? x : y;
+		return dx == 1 ? chunk.rowEnd[cellIndex(x, y)] : chunk.columnEnd[cellIndex(x, y)];
+	}
+
+	/**
+	 * Returns the length of the line of tiles through a cell
+	 * @param x x index
+	 * @param y y index
+	 * @param dx 1 for the row
+	 * @param dy 1 for the column
+	 * @return number of tiles in the line, 0 if the cell is empty
+	 */
+	public int getRunLength(int x, int y, int dx, int dy) {
+		if (!isOccupied(x, y))
+			return 0;
+		return getRunEnd(x, y, dx, dy) - getRunStart(x, y, dx, dy) + 1;
+	}
+
+	/**
+	 * Returns the number of tiles in a line directly before a cell (left or up)
+	 * @param x x index
+	 * @param y y index
+	 * @param dx 1 for the row
+	 * @param dy 1 for the column
+	 * @return number of tiles
+	 */
+	public int getRunBefore(int x, int y, int dx, int dy) {
+		if (!isOccupied(x - dx, y - dy))
+			return 0;
+		return (dx == 1 ? x : y) - getRunStart(x - dx, y - dy, dx, dy);
+	}
+
+	/**
+	 * Returns the number of tiles in a line directly after a cell (right or down)
+	 * @param x x index
+	 * @param y y index
+	 * @param dx 1 for the row
+	 * @param dy 1 for the column
+	 * @return number of tiles
+	 */
+	public int getRunAfter(int x, int y, int dx, int dy) {
+		if (!isOccupied(x + dx, y + dy))
+			return 0;
+		return getRunEnd(x + dx, y + dy, dx, dy) - (dx == 1 ? x : y);
+	}
+
+	/**
+	 * Merges the runs on each side of a newly placed tile
+	 */
+	private void joinRuns(int x, int y) {
+		setRun(x - getRunBefore(x, y, 1, 0), x + getRunAfter(x, y, 1, 0), y, 1, 0);
+		setRun(y - getRunBefore(x, y, 0, 1), y + getRunAfter(x, y, 0, 1), x, 0, 1);
+	}
+
+	/**
+	 * Splits the runs through a tile that was just removed
+	 */
+	private void splitRuns(int x, int y) {
+		if (isOccupied(x - 1, y))
+			setRun(getRunStart(x - 1, y, 1, 0), x - 1, y, 1, 0);
+		if (isOccupied(x + 1, y))
+			setRun(x + 1, getRunEnd(x + 1, y, 1, 0), y, 1, 0);
+		if (isOccupied(x, y - 1))
+			setRun(getRunStart(x, y - 1, 0, 1), y - 1, x, 0, 1);
+		if (isOccupied(x, y + 1))
+			setRun(y + 1, getRunEnd(x, y + 1, 0, 1), x, 0, 1);
 	}
-	
-	public int getXMax() {
-		return xMax;
+
+	/**
+	 * Stores a run's start and end in each of its cells
+	 * @param start first position of the run
+	 * @param end last position of the run
+	 * @param line y of a row, or x of a column
+	 */
+	private void setRun(int start, int end, int line, int dx, int dy) {
+		for (int i = start; i <= end; i++) {
+			int x = dx == 1 ? i : line;
+			int y = dx == 1 ? line : i;
+			Chunk chunk = getChunk(x, y, false);
+			int index = cellIndex(x, y);
+			if (dx == 1) {
+				setChunkValue(chunk, ROW_START, index, start);
+				setChunkValue(chunk, ROW_END, index, end);
+			}
+			else {
+				setChunkValue(chunk, COLUMN_START, index, start);
+				setChunkValue(chunk, COLUMN_END, index, end);
+			}
+		}
+	}
+
+	/**
+	 * Recomputes the legal masks of the empty cells at each end of the row and column
+	 * through a cell.  These are the only cells whose lines change when the cell is
+	 * filled or emptied.
+	 */
+	private void updateLineEnds(int x, int y) {
+		updateLegal(x - getRunBefore(x, y, 1, 0) - 1, y);
+		updateLegal(x + getRunAfter(x, y, 1, 0) + 1, y);
+		updateLegal(x, y - getRunBefore(x, y, 0, 1) - 1);
+		updateLegal(x, y + getRunAfter(x, y, 0, 1) + 1);
+	}
+
+	private void updateLegal(int x, int y) {
+		Chunk chunk = getChunk(x, y, false);
+		if (chunk == null)
+			return;
+		int index = cellIndex(x, y);
+		if (chunk.tiles[index] != TileCode.EMPTY)
+			return;
+		if (chunk.frontierPos[index] == 0)
+			setLegal(chunk, index, 0);
+		else
+			setLegal(chunk, index, getLineMask(x, y, 1, 0) & getLineMask(x, y, 0, 1));
+	}
+
+	/**
+	 * Computes which tile kinds fit the line of tiles running through an empty cell
+	 * in one direction.  A tile fits if the whole line shares its color and has none of
+	 * its shape, or shares its shape and has none of its color.  Nothing fits if the cell
+	 * would join two lines that hold the same tile.
+	 * @param x x index
+	 * @param y y index
+	 * @param dx 1 for the row
+	 * @param dy 1 for the column
+	 * @return bit mask of tile kinds, all kinds if the line is empty
+	 */
+	private long getLineMask(int x, int y, int dx, int dy) {
+		long colorsSeen = 0;
+		long shapesSeen = 0;
+		long kindsSeen = 0;
+		int color = -1;
+		int shape = -1;
+		boolean sameColor = true;
+		boolean sameShape = true;
+		int count = 0;
+
+		for (int dir = -1; dir <= 1; dir += 2) {
+			for (int i = 1; i <= LINE_LIMIT; i++) {
+				int code = getTileCode(x + dir * dx * i, y + dir * dy * i);
+				if (code == TileCode.EMPTY)
+					break;
+
+				if (count == 0) {
+					color = TileCode.color(code);
+					shape = TileCode.shape(code);
+				}
+				if ((kindsSeen & TileCode.bit(code)) != 0)
+					return 0;
+				kindsSeen |= TileCode.bit(code);
+				sameColor &= TileCode.color(code) == color;
+				sameShape &= TileCode.shape(code) == shape;
+				colorsSeen |= TileCode.colorMask(TileCode.color(code));
+				shapesSeen |= TileCode.shapeMask(TileCode.shape(code));
+				count++;
+			}
+		}
+
+		if (count == 0)
+			return TileCode.ALL_KINDS;
+
+		long mask = 0;
+		if (sameColor)
+			mask |= TileCode.colorMask(color) & ~shapesSeen;
+		if (sameShape)
+			mask |= TileCode.shapeMask(shape) & ~colorsSeen;
+		return mask;
+	}
+
+	private boolean hasNeighbor(int x, int y) {
+		return isOccupied(x - 1, y) || isOccupied(x + 1, y) ||
+			   isOccupied(x, y - 1) || isOccupied(x, y + 1);
+	}
+
+	private boolean isOccupied(int x, int y) {
+		return getTileCode(x, y) != TileCode.EMPTY;
+	}
+
+	/**
+	 * Adds or removes an empty cell from the frontier depending on its neighbors
+	 */
+	private void updateFrontier(int x, int y) {
+		if (isOccupied(x, y))
+			return;
+		if (hasNeighbor(x, y))
+			addToFrontier(x, y);
+		else
+			removeFromFrontier(x, y);
 	}
-	
-	public int getYMax() {
-		return yMax;
+
+	private void addToFrontier(int x, int y) {
+		Chunk chunk = getChunk(x, y, true);
+		int index = cellIndex(x, y);
+		if (chunk.frontierPos[index] != 0)
+			return;
+		if (frontierSize == frontier.length)
+			frontier = Arrays.copyOf(frontier, frontier.length * 2);
+		setBoardValue(FRONTIER, frontierSize, cellKey(x, y));
+		setBoardValue(FRONTIER_SIZE, 0, frontierSize + 1);
+		setChunkValue(chunk, FRONTIER_POS, index, frontierSize);
+	}
+
+	private void removeFromFrontier(int x, int y) {
+		Chunk chunk = getChunk(x, y, false);
+		if (chunk == null)
+			return;
+		int index = cellIndex(x, y);
+		int pos = chunk.frontierPos[index];
+		if (pos == 0)
+			return;
+		setChunkValue(chunk, FRONTIER_POS, index, 0);
+		setLegal(chunk, index, 0);
+
+		//Move last cell into the hole
+		int last = frontier[frontierSize - 1];
+		setBoardValue(FRONTIER_SIZE, 0, frontierSize - 1);
+		if (pos - 1 != frontierSize) {
+			setBoardValue(FRONTIER, pos - 1, last);
+			setChunkValue(getChunk(cellX(last), cellY(last), false), FRONTIER_POS, cellIndex(cellX(last), cellY(last)), pos);
+		}
+	}
+
+	private void addToOccupied(Chunk chunk, int index, int key) {
+		if (tileCount == occupied.length)
+			occupied = Arrays.copyOf(occupied, occupied.length * 2);
+		setBoardValue(OCCUPIED, tileCount, key);
+		setBoardValue(TILE_COUNT, 0, tileCount + 1);
+		setChunkValue(chunk, OCCUPIED_POS, index, tileCount);
+	}
+
+	private void removeFromOccupied(Chunk chunk, int index) {
+		int pos = chunk.occupiedPos[index];
+		setChunkValue(chunk, OCCUPIED_POS, index, 0);
+
+		//Move last cell into the hole
+		int last = occupied[tileCount - 1];
+		setBoardValue(TILE_COUNT, 0, tileCount - 1);
+		if (pos - 1 != tileCount) {
+			setBoardValue(OCCUPIED, pos - 1, last);
+			setChunkValue(getChunk(cellX(last), cellY(last), false), OCCUPIED_POS, cellIndex(cellX(last), cellY(last)), pos);
+		}
+	}
+
+	/**
+	 * Recomputes the bounding box from the placed tiles
+	 */
+	private void updateBounds() {
+		if (tileCount == 0)
+			return;
+		int left = cellX(occupied[0]);
+		int right = left;
+		int top = cellY(occupied[0]);
+		int bottom = top;
+		for (int i = 1; i < tileCount; i++) {
+			int x = cellX(occupied[i]);
+			int y = cellY(occupied[i]);
+			left = Math.min(left, x);
+			right = Math.max(right, x);
+			top = Math.min(top, y);
+			bottom = Math.max(bottom, y);
+		}
+		setBounds(left, right, top, bottom);
+	}
+
+	private void setBounds(int left, int right, int top, int bottom) {
+		setBoardValue(MIN_X, 0, left);
+		setBoardValue(MAX_X, 0, right);
+		setBoardValue(MIN_Y, 0, top);
+		setBoardValue(MAX_Y, 0, bottom);
+	}
+
+	/**
+	 * Packs the location of a journaled value into an int
+	 * @param field one of the journal fields
+	 * @param index index into the array, 0 for single values
+	 * @param chunkId id of the chunk for chunk arrays, 0 otherwise
+	 */
+	private static int journalKey(int field, int index, int chunkId) {
+		return field | (index << 5) | (chunkId << 13);
+	}
+
+	private void record(int where, long old) {
+		if (undoSize == undoWhere.length) {
+			undoWhere = Arrays.copyOf(undoWhere, undoSize * 2);
+			undoValue = Arrays.copyOf(undoValue, undoSize * 2);
+		}
+		undoWhere[undoSize] = where;
+		undoValue[undoSize] = old;
+		undoSize++;
+	}
+
+	/**
+	 * Writes a value into one of a chunk's int arrays, journaling the old value if moves are made
+	 */
+	private void setChunkValue(Chunk chunk, int field, int index, int value) {
+		int[] array = getChunkArray(chunk, field);
+		if (moveDepth > 0)
+			record(journalKey(field, index, chunk.id), array[index]);
+		array[index] = value;
+	}
+
+	private void setLegal(Chunk chunk, int index, long value) {
+		if (moveDepth > 0)
+			record(journalKey(LEGAL, index, chunk.id), chunk.legal[index]);
+		chunk.legal[index] = value;
+	}
+
+	private void updateHashKey(int x, int y, int code) {
+		if (moveDepth > 0)
+			record(journalKey(HASH_KEY, 0, 0), hashKey);
+		hashKey ^= Zobrist.cell(x, y, code);
+	}
+
+	/**
+	 * Writes one of the board's own values, journaling the old value if moves are made
+	 */
+	private void setBoardValue(int field, int index, int value) {
+		if (moveDepth > 0)
+			record(journalKey(field, index, 0), getBoardValue(field, index));
+		putBoardValue(field, index, value);
+	}
+
+	/**
+	 * Puts back a value from the journal
+	 */
+	private void restore(int where, long old) {
+		int field = where & 0x1F;
+		if (field == HASH_KEY)
+			hashKey = old;
+		else if (field <= COLUMN_END) {
+			Chunk chunk = chunkList[where >>> 13];
+			int index = (where >>> 5) & 0xFF;
+			if (field == LEGAL)
+				chunk.legal[index] = old;
+			else
+				getChunkArray(chunk, field)[index] = (int) old;
+		}
+		else
+			putBoardValue(field, where >>> 5, (int) old);
+	}
+
+	private static int[] getChunkArray(Chunk chunk, int field) {
+		switch (field) {
+		case TILES: return chunk.tiles;
+		case FRONTIER_POS: return chunk.frontierPos;
+		case OCCUPIED_POS: return chunk.occupiedPos;
+		case ROW_START: return chunk.rowStart;
+		case ROW_END: return chunk.rowEnd;
+		case COLUMN_START: return chunk.columnStart;
+		default: return chunk.columnEnd;
+		}
+	}
+
+	private int getBoardValue(int field, int index) {
+		switch (field) {
+		case FRONTIER: return frontier[index];
+		case OCCUPIED: return occupied[index];
+		case FRONTIER_SIZE: return frontierSize;
+		case TILE_COUNT: return tileCount;
+		case MIN_X: return minX;
+		case MAX_X: return maxX;
+		case MIN_Y: return minY;
+		default: return maxY;
+		}
+	}
+
+	private void putBoardValue(int field, int index, int value) {
+		switch (field) {
+		case FRONTIER: frontier[index] = value; break;
+		case OCCUPIED: occupied[index] = value; break;
+		case FRONTIER_SIZE: frontierSize = value; break;
+		case TILE_COUNT: tileCount = value; break;
+		case MIN_X: minX = value; break;
+		case MAX_X: maxX = value; break;
+		case MIN_Y: minY = value; break;
+		default: maxY = value; break;
+		}
+	}
+
+	/**
+	 * Returns the index of a cell inside its chunk
+	 */
+	private static int cellIndex(int x, int y) {
+		return ((y & CHUNK_MASK) << CHUNK_BITS) | (x & CHUNK_MASK);
+	}
+
+	/**
+	 * Finds the chunk holding a cell
+	 * @param x x index
+	 * @param y y index
+	 * @param create true to create the chunk if it doesn't exist yet
+	 * @return chunk, null if it doesn't exist and create is false
+	 */
+	private Chunk getChunk(int x, int y, boolean create) {
+		int key = cellKey(x >> CHUNK_BITS, y >> CHUNK_BITS);
+		if (key == lastKey)
+			return lastChunk;
+
+		int mask = chunkKeys.length - 1;
+		int slot = hash(key) & mask;
+		while (chunkKeys[slot] != NO_KEY) {
+			if (chunkKeys[slot] == key) {
+				lastKey = key;
+				lastChunk = chunks[slot];
+				return lastChunk;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		if (!create)
+			return null;
+
+		//Keep the table at most half full
+		if ((chunkCount + 1) * 2 > chunkKeys.length) {
+			growChunks();
+			return getChunk(x, y, true);
+		}
+
+		Chunk chunk = new Chunk();
+		if (chunkCount == chunkList.length)
+			chunkList = Arrays.copyOf(chunkList, chunkCount * 2);
+		chunk.id = chunkCount;
+		chunkList[chunkCount] = chunk;
+		chunkKeys[slot] = key;
+		chunks[slot] = chunk;
+		chunkCount++;
+		lastKey = key;
+		lastChunk = chunk;
+		return chunk;
+	}
+
+	private void growChunks() {
+		int[] oldKeys = chunkKeys;
+		Chunk[] oldChunks = chunks;
+		chunkKeys = new int[oldKeys.length * 2];
+		chunks = new Chunk[oldChunks.length * 2];
+		for (int i = 0; i < chunkKeys.length; i++)
+			chunkKeys[i] = NO_KEY;
+
+		int mask = chunkKeys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] == NO_KEY)
+				continue;
+			int slot = hash(oldKeys[i]) & mask;
+			while (chunkKeys[slot] != NO_KEY)
+				slot = (slot + 1) & mask;
+			chunkKeys[slot] = oldKeys[i];
+			chunks[slot] = oldChunks[i];
+		}
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
 	}
 }
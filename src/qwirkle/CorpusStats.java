@@ -0,0 +1,387 @@
+package qwirkle;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Measures how each AI level plays across a game record file, in one pass over the games.
+ * <p>
+ * For every AI level it counts the final score distribution, wins, Qwirkles, swaps and
+ * passes, and the average turn score in each phase of the game: the opening (the first
+ * third of the deck), the middle game and the endgame (once the deck is empty).  It also
+ * counts how often the player who moved first won.
+ * <p>
+ * Nothing is replayed through the engine.  Each game's placements are put on a bare Board
+ * only to measure the lines they made, so a Qwirkle can be told apart from other turns.
+ * Memory stays the same however large the corpus is: the file is memory-mapped by
+ * GameReader, and the games are split between the threads of a ForkJoinPool in ranges of
+ * consecutive games, so each thread reads its own stretch of the file.  Each range counts
+ * into its own Stats of fixed size, which are only added together as the ranges finish.
+ * <p>
+ * Usage: CorpusStats file [threads]
+ * @author Gabriel Stackhouse
+ *
+ */
+public class CorpusStats {
+
+	//Games a task counts itself instead of splitting further
+	private static final int BATCH = 1024;
+
+	//AI levels, and one more for seats that weren't an AiPlayer
+	private static final int LEVELS = AiPlayer.MASTER + 2;
+	private static final int HUMAN_LEVEL = LEVELS - 1;
+
+	//Game phases, by the tiles left in the deck at the start of the turn
+	public static final int OPENING = 0;
+	public static final int MIDDLE = 1;
+	public static final int ENDGAME = 2;
+	private static final int PHASES = 3;
+
+	//Tiles left in the deck once both hands are dealt
+	private static final int DEALT_DECK = Deck.MAX_SIZE - 2 * 6;
+
+	//A line of this many tiles is a Qwirkle
+	private static final int QWIRKLE = 6;
+
+	private GameReader reader;
+
+	/**
+	 * @param reader game record file to measure
+	 */
+	public CorpusStats(GameReader reader) {
+		this.reader = reader;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: CorpusStats file [threads]");
+			return;
+		}
+
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		try (GameReader reader = new GameReader(Paths.get(args[0]))) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			long start = System.nanoTime();
+			Stats stats = new CorpusStats(reader).count(pool);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			pool.shutdown();
+
+			System.out.printf("%d games, %.1f MB on %d threads%n", stats.getGames(), reader.getSize() / 1e6, threads);
+			System.out.printf("Time %.2f s, %.0f games/sec%n%n", seconds, stats.getGames() / seconds);
+			stats.print();
+		}
+	}
+
+	/**
+	 * Counts every game in the file
+	 * @param pool pool to count the games in
+	 * @return counts of all the games
+	 */
+	public Stats count(ForkJoinPool pool) {
+		return pool.invoke(new Batch(0, reader.getGameCount()));
+	}
+
+	/**
+	 * Counts a range of games
+	 * @param from first game number
+	 * @param to one past the last game number
+	 * @return counts of the games
+	 */
+	public Stats count(int from, int to) {
+		Stats stats = new Stats();
+		for (int game = from; game < to; game++)
+			stats.add(reader.getGame(game));
+		return stats;
+	}
+
+	/**
+	 * Splits its range of games in half until it is small enough to count
+	 */
+	private class Batch extends RecursiveTask<Stats> {
+
+		private static final long serialVersionUID = 1L;
+
+		private int from;
+		private int to;
+
+		Batch(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Stats compute() {
+			if (to - from <= BATCH)
+				return count(from, to);
+
+			int middle = (from + to) >>> 1;
+			Batch left = new Batch(from, middle);
+			left.fork();
+			Stats stats = new Batch(middle, to).compute();
+			stats.add(left.join());
+			return stats;
+		}
+	}
+
+	/**
+	 * Counts of a set of games, by the AI level of the player
+	 */
+	public static class Stats {
+
+		//Scores above this are counted as this
+		private static final int MAX_SCORE = 1023;
+
+		private long games;
+		private long[] seatWins = new long[GameEngine.PLAYERS];
+		private long ties;
+		private long[] seatScores = new long[GameEngine.PLAYERS];
+
+		private long[] levelGames = new long[LEVELS];
+		private long[] levelWins = new long[LEVELS];
+		private long[][] scores = new long[LEVELS][MAX_SCORE + 1];
+		private long[] turns = new long[LEVELS];
+		private long[] swaps = new long[LEVELS];
+		private long[] passes = new long[LEVELS];
+		private long[] qwirkles = new long[LEVELS];
+		private long[][] phaseTurns = new long[LEVELS][PHASES];
+		private long[][] phasePoints = new long[LEVELS][PHASES];
+
+		/**
+		 * Counts a game
+		 * @param record game to count
+		 */
+		public void add(GameRecord record) {
+			games++;
+			int winner = record.getWinner();
+			if (winner < 0)
+				ties++;
+			else
+				seatWins[winner]++;
+
+			int[] level = new int[GameEngine.PLAYERS];
+			for (int seat = 0; seat < GameEngine.PLAYERS; seat++) {
+				level[seat] = index(record.getLevel(seat));
+				int score = record.getScore(seat);
+				seatScores[seat] += score;
+				levelGames[level[seat]]++;
+				scores[level[seat]][Math.max(0, Math.min(score, MAX_SCORE))]++;
+				if (seat == winner)
+					levelWins[level[seat]]++;
+			}
+
+			Board board = new Board();
+			int deck = DEALT_DECK;
+			for (int t = 0; t < record.getTurnCount(); t++) {
+				int l = level[record.getPlayer(t)];
+				int type = record.getType(t);
+				turns[l]++;
+				if (type == GameRecord.SWAP)
+					swaps[l]++;
+				else if (type == GameRecord.PASS)
+					passes[l]++;
+				else {
+					int phase = deck == 0 ? ENDGAME : deck > DEALT_DECK * 2 / 3 ? OPENING : MIDDLE;
+					phaseTurns[l][phase]++;
+					phasePoints[l][phase] += record.getTurnScore(t);
+					qwirkles[l] += countQwirkles(record, t, board);
+
+					//Swapped tiles go back in the deck, so only placements use it up
+					deck -= record.getDrawCount(t);
+				}
+			}
+		}
+
+		/**
+		 * Places a turn's tiles and counts the lines of six they made
+		 */
+		private static int countQwirkles(GameRecord record, int t, Board board) {
+			int count = record.getTileCount(t);
+			for (int i = 0; i < count; i++)
+				board.placeTileCode(record.getTileCode(t, i), record.getX(t, i), record.getY(t, i));
+
+			int x = record.getX(t, 0);
+			int y = record.getY(t, 0);
+			if (count == 1) {
+				return (board.getRunLength(x, y, 1, 0) == QWIRKLE ? 1 : 0) +
+						(board.getRunLength(x, y, 0, 1) == QWIRKLE ? 1 : 0);
+			}
+
+			//One line along the turn, and one across it through each tile
+			boolean column = record.getX(t, 1) == x;
+			int dx = column ? 0 : 1;
+			int qwirkles = board.getRunLength(x, y, dx, 1 - dx) == QWIRKLE ? 1 : 0;
+			for (int i = 0; i < count; i++) {
+				if (board.getRunLength(record.getX(t, i), record.getY(t, i), 1 - dx, dx) == QWIRKLE)
+					qwirkles++;
+			}
+			return qwirkles;
+		}
+
+		/**
+		 * Adds the counts of other games to these
+		 * @param other counts to add
+		 */
+		public void add(Stats other) {
+			games += other.games;
+			ties += other.ties;
+			for (int seat = 0; seat < GameEngine.PLAYERS; seat++) {
+				seatWins[seat] += other.seatWins[seat];
+				seatScores[seat] += other.seatScores[seat];
+			}
+			for (int l = 0; l < LEVELS; l++) {
+				levelGames[l] += other.levelGames[l];
+				levelWins[l] += other.levelWins[l];
+				turns[l] += other.turns[l];
+				swaps[l] += other.swaps[l];
+				passes[l] += other.passes[l];
+				qwirkles[l] += other.qwirkles[l];
+				for (int s = 0; s <= MAX_SCORE; s++)
+					scores[l][s] += other.scores[l][s];
+				for (int p = 0; p < PHASES; p++) {
+					phaseTurns[l][p] += other.phaseTurns[l][p];
+					phasePoints[l][p] += other.phasePoints[l][p];
+				}
+			}
+		}
+
+		public long getGames() {
+			return games;
+		}
+
+		public long getTies() {
+			return ties;
+		}
+
+		/**
+		 * @param seat 0 for the player who moved first, 1 for the second
+		 * @return number of games won from the seat
+		 */
+		public long getSeatWins(int seat) {
+			return seatWins[seat];
+		}
+
+		/**
+		 * @param seat 0 for the player who moved first, 1 for the second
+		 * @return mean final score from the seat
+		 */
+		public double getSeatMeanScore(int seat) {
+			return games == 0 ? 0 : seatScores[seat] / (double) games;
+		}
+
+		/**
+		 * @param level AI level (see AiPlayer), GameRecord.HUMAN for other players
+		 * @return number of seats played at the level, two for a game against itself
+		 */
+		public long getGames(int level) {
+			return levelGames[index(level)];
+		}
+
+		/**
+		 * @param level AI level (see AiPlayer), GameRecord.HUMAN for other players
+		 * @return number of games won
+		 */
+		public long getWins(int level) {
+			return levelWins[index(level)];
+		}
+
+		/**
+		 * @param level AI level (see AiPlayer), GameRecord.HUMAN for other players
+		 * @return mean final score
+		 */
+		public double getMeanScore(int level) {
+			int l = index(level);
+			if (levelGames[l] == 0)
+				return 0;
+			long total = 0;
+			for (int s = 0; s <= MAX_SCORE; s++)
+				total += s * scores[l][s];
+			return total / (double) levelGames[l];
+		}
+
+		/**
+		 * Returns the final score that a fraction of games scored at or below
+		 * @param level AI level (see AiPlayer), GameRecord.HUMAN for other players
+		 * @param fraction between 0 and 1, 0.5 for the median
+		 * @return score
+		 */
+		public int getScorePercentile(int level, double fraction) {
+			int l = index(level);
+			long rank = Math.max(1, (long) Math.ceil(fraction * levelGames[l]));
+			long count = 0;
+			for (int s = 0; s <= MAX_SCORE; s++) {
+				count += scores[l][s];
+				if (count >= rank)
+					return s;
+			}
+			return MAX_SCORE;
+		}
+
+		/**
+		 * @param level AI level (see AiPlayer), GameRecord.HUMAN for other players
+		 * @return Qwirkles made per game
+		 */
+		public double getQwirklesPerGame(int level) {
+			int l = index(level);
+			return levelGames[l] == 0 ? 0 : qwirkles[l] / (double) levelGames[l];
+		}
+
+		/**
+		 * @param level AI level (see AiPlayer), GameRecord.HUMAN for other players
+		 * @return fraction of turns spent swapping
+		 */
+		public double getSwapRate(int level) {
+			int l = index(level);
+			return turns[l] == 0 ? 0 : swaps[l] / (double) turns[l];
+		}
+
+		/**
+		 * @param level AI level (see AiPlayer), GameRecord.HUMAN for other players
+		 * @return fraction of turns passed
+		 */
+		public double getPassRate(int level) {
+			int l = index(level);
+			return turns[l] == 0 ? 0 : passes[l] / (double) turns[l];
+		}
+
+		/**
+		 * @param level AI level (see AiPlayer), GameRecord.HUMAN for other players
+		 * @param phase OPENING, MIDDLE or ENDGAME
+		 * @return mean score of the turns placing tiles in the phase
+		 */
+		public double getMeanTurnScore(int level, int phase) {
+			int l = index(level);
+			return phaseTurns[l][phase] == 0 ? 0 : phasePoints[l][phase] / (double) phaseTurns[l][phase];
+		}
+
+		/**
+		 * Prints a table for each level that played, then the first mover's record
+		 */
+		public void print() {
+			System.out.printf("%-10s %8s %7s %7s %5s %5s %5s %8s %7s %7s %7s %7s %7s%n", "", "Games", "Win %", "Mean",
+					"P10", "P50", "P90", "Qwirkle", "Swap %", "Pass %", "Open", "Middle", "End");
+			for (int l = 0; l < LEVELS; l++) {
+				if (levelGames[l] == 0)
+					continue;
+				int level = l == HUMAN_LEVEL ? GameRecord.HUMAN : l;
+				String name = level == GameRecord.HUMAN ? "Human" : new AiPlayer(level).toString();
+				System.out.printf("%-10s %8d %6.2f%% %7.1f %5d %5d %5d %8.2f %6.2f%% %6.2f%% %7.2f %7.2f %7.2f%n", name,
+						levelGames[l], 100.0 * levelWins[l] / levelGames[l], getMeanScore(level),
+						getScorePercentile(level, 0.1), getScorePercentile(level, 0.5), getScorePercentile(level, 0.9),
+						getQwirklesPerGame(level), 100 * getSwapRate(level), 100 * getPassRate(level),
+						getMeanTurnScore(level, OPENING), getMeanTurnScore(level, MIDDLE), getMeanTurnScore(level, ENDGAME));
+			}
+			System.out.println("Open, Middle and End are the mean points of turns placing tiles in each phase");
+			System.out.printf("%nFirst mover won %.2f%%, second %.2f%%, tied %.2f%%, mean score %.1f - %.1f%n",
+					percent(seatWins[0]), percent(seatWins[1]), percent(ties), getSeatMeanScore(0), getSeatMeanScore(1));
+		}
+
+		private double percent(long count) {
+			return games == 0 ? 0 : 100.0 * count / games;
+		}
+
+		private static int index(int level) {
+			return level < 0 || level >= HUMAN_LEVEL ? HUMAN_LEVEL : level;
+		}
+	}
+}
@@ -1,103 +1,163 @@
 package qwirkle;
-import java.util.ArrayList;
-import java.awt.Color;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 public class Deck {
-	
-	private ArrayList<Tile> deck = new ArrayList<Tile>();
-	private static char[] symbols = {'@', '#', '$', '%', '&', '*'};
-	private static Color[] colors = 
-		{Color.orange, Color.magenta, Color.yellow,
-		 Color.red,    Color.green,   Color.blue
-		};
-	private int maxSize;
-	
+
+	public static final int MAX_SIZE = TileCode.KINDS * TileCode.COPIES;
+
+	//Tile codes (see TileCode).  The top of the deck is the end of the array, so drawing a
+	//tile only moves the top pointer
+	private int[] deck = new int[MAX_SIZE];
+	private int top; //number of tiles in the deck, the next tile drawn is deck[top - 1]
+	private int[] remaining = new int[TileCode.KINDS];
+	private SplittableRandom rand;
+
 	/**
 	 * Constructs a deck with default 108 tiles, then shuffles it
 	 */
 	public Deck() {
-		maxSize = 108;
-		
+		this(new SplittableRandom());
+	}
+
+	/**
+	 * Constructs a deck with default 108 tiles, then shuffles it.  The same random
+	 * generator is used for every shuffle, so a seeded one always gives the same game
+	 * @param rand random generator for shuffling
+	 */
+	public Deck(SplittableRandom rand) {
+		this.rand = rand;
+
 		//Construct 3 of each type of tile, then add to deck
-		for (int i = 0; i < 3; i++) {
-			for (int j = 0; j < 6; j++) {
-				for (int k = 0; k < 6; k++) {
-					Tile tile = new Tile (symbols[j], colors[k]);
-					deck.add(tile);
+		for (int i = 0; i < TileCode.COPIES; i++) {
+			for (int j = 0; j < TileCode.SHAPES; j++) {
+				for (int k = 0; k < TileCode.COLORS; k++) {
+					int code = TileCode.encode(k, j, i);
+					deck[top++] = code;
+					remaining[TileCode.kind(code)]++;
 				}
 			}
 		}
-		
+
 		//Shuffle the deck
 		shuffle();
 	}
-	
+
 	public int getSize() {
-		return deck.size();
+		return top;
 	}
-	
+
 	public boolean isEmpty() {
-		return deck.isEmpty();
+		return top == 0;
 	}
-	
+
 	public boolean isFull() {
-		return deck.size() == maxSize;
+		return top == MAX_SIZE;
+	}
+
+	/**
+	 * Returns the number of tiles of a kind left in the deck
+	 * @param kind kind of tile (see TileCode.kind)
+	 * @return number of tiles, 0 to 3
+	 */
+	public int getRemaining(int kind) {
+		return remaining[kind];
 	}
-	
+
 	public void addTile(Tile tile) {
-		deck.add(tile);
+		addTileCode(Tile.codeOf(tile));
+	}
+
+	/**
+	 * Puts a tile back in the deck at a random position, like returning it to the bag
+	 * @param code code of tile
+	 * @throws IllegalStateException if the deck is full, which means a tile was put back twice
+	 */
+	public void addTileCode(int code) {
+		if (code == TileCode.EMPTY)
+			return;
+		if (top == MAX_SIZE)
+			throw new IllegalStateException("Deck is full, can't put back " + TileCode.name(code));
+
+		//Put the tile on top, then swap it with any position, including its own
+		int sw = rand.nextInt(top + 1);
+		deck[top] = deck[sw];
+		deck[sw] = code;
+		top++;
+		remaining[TileCode.kind(code)]++;
 	}
-	
+
 	/**
 	 * Removes the tile on the top of the deck
 	 * @return tile removed, null if deck is empty
 	 */
 	public Tile removeTile() {
-		if (!deck.isEmpty())
-			return deck.remove(0);
-		else
-			return null;
+		return Tile.of(removeTileCode());
 	}
-	
+
+	/**
+	 * Removes the tile on the top of the deck
+	 * @return code of tile removed, TileCode.EMPTY if deck is empty
+	 */
+	public int removeTileCode() {
+		if (top == 0)
+			return TileCode.EMPTY;
+		if (Metrics.ENABLED)
+			Metrics.DECK_DRAWS.increment();
+		int code = deck[--top];
+		remaining[TileCode.kind(code)]--;
+		return code;
+	}
+
 	/**
 	 * Gets tile at the specified index without removing it
-	 * @param index index of tile
+	 * @param index index of tile, 0 for the top of the deck
 	 * @return tile, null if index doesn't exist
 	 */
 	public Tile getTileAtIndex(int index) {
-		if (index < 0 || index >= deck.size())
-			return null;
+		return Tile.of(getTileCodeAtIndex(index));
+	}
+
+	/**
+	 * Gets code of tile at the specified index without removing it
+	 * @param index index of tile, 0 for the top of the deck
+	 * @return tile code, TileCode.EMPTY if index doesn't exist
+	 */
+	public int getTileCodeAtIndex(int index) {
+		if (index < 0 || index >= top)
+			return TileCode.EMPTY;
 		else
-			return deck.get(index);
-		
+			return deck[top - 1 - index];
 	}
-	
+
 	/**
-	 * Removes tile at specified index
-	 * @param index index of tile
-	 * @return
+	 * Removes tile at specified index.  The top tile takes its place
+	 * @param index index of tile, 0 for the top of the deck
+	 * @return tile removed, null if index doesn't exist
 	 */
 	public Tile removeTileAtIndex(int index) {
-		if (index < 0 || index >= deck.size())
+		if (index < 0 || index >= top)
 			return null;
-		else
-			return deck.remove(index);
+
+		int position = top - 1 - index;
+		int code = deck[position];
+		deck[position] = deck[--top];
+		remaining[TileCode.kind(code)]--;
+		return Tile.of(code);
 	}
-	
+
 	/**
-	 * Shuffles the deck by swapping each tile with one at a random index
+	 * Shuffles the deck (Fisher-Yates) by swapping each tile with one at a random index
+	 * at or below it
 	 */
 	public void shuffle() {
-		if (deck.size() > 0) {
-			Random rand = new Random();
-			for (int i = 0; i < deck.size(); i++) {
-				int sw = rand.nextInt(deck.size());
-				Tile temp = deck.get(i);
-				deck.set(i, deck.get(sw));
-				deck.set(sw, temp);
-			}
+		if (Metrics.ENABLED)
+			Metrics.DECK_SHUFFLES.increment();
+		for (int i = top - 1; i > 0; i--) {
+			int sw = rand.nextInt(i + 1);
+			int temp = deck[i];
+			deck[i] = deck[sw];
+			deck[sw] = temp;
 		}
 	}
-	
+
 }
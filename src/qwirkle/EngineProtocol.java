@@ -0,0 +1,332 @@
+package qwirkle;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers position queries from another program over stdin and stdout, one line each, so
+ * bots and scripts can use the rules engine and AI without the terminal game.
+ * <p>
+ * A query gives a position and gets back the turn an AI level would play in it, with its
+ * score.  Queries are answered by a pool of workers, so a client can send many without
+ * waiting, and each answer names the query it answers.  Answers may come back in any order.
+ * When the workers fall behind, reading stops until they catch up.  Commands:
+ * <pre>
+ * qwirkle          answers "id name Qwirkle", then "qwirkleok"
+ * isready          answers "readyok" once every query sent before it has been answered
+ * query ID ...     answers "bestturn ID SCORE X,Y,TILE ...", "bestturn ID none" if no
+ *                  tile can be placed, or "error ID MESSAGE"
+ * quit             stops, once every query has been answered
+ * </pre>
+ * A query is its ID (any word) followed by any of:
+ * <pre>
+ * board X,Y,TILE ...   tiles on the board
+ * hand TILE ...        the AI's hand
+ * unseen TILE ...      tiles in the deck and the opponent's hand.  Only how many are
+ *                      given is used, to count the deck; the AIs work out which tiles
+ *                      are unseen from the board and hand
+ * level N              AI level, 0 Easy to 4 Master (2 Hard if not given)
+ * opponent N           tiles in the opponent's hand, 0 to 6 (6 if not given)
+ * deck N               tiles left in the deck, 0 to 108 (if not given, every tile not
+ *                      on the board or in either hand)
+ * placed N             tiles placed so far, 0 to 108 (if not given, the tiles on the board)
+ * </pre>
+ * A tile is its color's letter (O, M, Y, R, G, B) and its shape's symbol (@ # $ % &amp; *),
+ * as in TileCode.name.  For example:
+ * <pre>
+ * query 7 level 2 board 0,0,R@ 1,0,R# hand R$ G@ B% Y* O&amp; M@
+ * bestturn 7 4 0,1,M@ -1,1,G@
+ * </pre>
+ * Usage: EngineProtocol [threads]
+ * @author Gabriel Stackhouse
+ *
+ */
+public class EngineProtocol {
+
+	//Queries waiting for a worker, per worker, before reading stops
+	private static final int QUEUE_PER_THREAD = 64;
+
+	//Tiles in a full hand
+	private static final int HAND_SIZE = 6;
+
+	//Furthest a board tile may be from the origin, so that any turn played next to it stays
+	//within the board's -32768 to 32767
+	private static final int MAX_COORDINATE = Short.MAX_VALUE - Turn.MAX_TILES;
+
+	private final BufferedReader in;
+	private final Writer out;
+	private final ThreadPoolExecutor workers;
+	private final ThreadLocal<AiPlayer[]> ais =
+			ThreadLocal.withInitial(() -> new AiPlayer[AiPlayer.MASTER + 1]);
+
+	//Queries read and not yet answered
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/**
+	 * @param in where commands are read from
+	 * @param out where answers are written to
+	 * @param threads number of workers answering queries
+	 */
+	public EngineProtocol(Reader in, Writer out, int threads) {
+		this.in = new BufferedReader(in);
+		this.out = out;
+		AtomicInteger count = new AtomicInteger();
+		workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(threads * QUEUE_PER_THREAD), runnable -> {
+					Thread thread = new Thread(runnable, "EngineProtocol worker " + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		Metrics.start();
+		Reader in = new InputStreamReader(System.in, StandardCharsets.UTF_8);
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+		new EngineProtocol(in, out, threads).run();
+	}
+
+	/**
+	 * Reads and answers commands until quit or the end of the input
+	 * @throws IOException if reading or writing fails
+	 * @throws InterruptedException if interrupted while waiting for answers
+	 */
+	public void run() throws IOException, InterruptedException {
+		String line;
+		while ((line = in.readLine()) != null) {
+			String[] words = line.trim().split("\\s+");
+			String command = words[0];
+			if (command.isEmpty())
+				continue;
+			if (command.equals("quit"))
+				break;
+			else if (command.equals("qwirkle")) {
+				send("id name Qwirkle");
+				send("qwirkleok");
+			}
+			else if (command.equals("isready")) {
+				awaitAnswers();
+				send("readyok");
+			}
+			else if (command.equals("query"))
+				query(words);
+			else
+				send("error - unknown command " + command);
+		}
+
+		awaitAnswers();
+		workers.shutdown();
+		out.flush();
+	}
+
+	/**
+	 * Reads a query and hands it to a worker
+	 */
+	private void query(String[] words) {
+		if (words.length < 2) {
+			send("error - query needs an id");
+			return;
+		}
+		String id = words[1];
+		Query query;
+		try {
+			query = new Query(words);
+		}
+		catch (IllegalArgumentException e) {
+			send("error " + id + " " + e.getMessage());
+			return;
+		}
+
+		pending.incrementAndGet();
+		workers.execute(() -> {
+			try {
+				send(answer(id, query));
+			}
+			catch (RuntimeException e) {
+				send("error " + id + " " + e);
+			}
+			finally {
+				if (pending.decrementAndGet() == 0) {
+					synchronized (pending) {
+						pending.notifyAll();
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Finds the AI's turn.  Runs on a worker
+	 */
+	private String answer(String id, Query query) {
+		AiPlayer[] players = ais.get();
+		if (players[query.level] == null) {
+			players[query.level] = query.level == AiPlayer.MASTER
+					? new AiPlayer(new MonteCarloSearch(MonteCarloSearch.DEFAULT_BUDGET, 1)) : new AiPlayer(query.level);
+		}
+		Turn turn = players[query.level].chooseTurn(query.hand, query.board, query.tilesPlaced, query.deckSize,
+				query.opponentTiles);
+		if (turn == null)
+			return "bestturn " + id + " none";
+
+		StringBuilder answer = new StringBuilder("bestturn ").append(id).append(' ').append(turn.getScore());
+		for (int i = 0; i < turn.size(); i++) {
+			answer.append(' ').append(turn.getX(i)).append(',').append(turn.getY(i)).append(',')
+					.append(TileCode.name(turn.getTileCode(i)));
+		}
+		return answer.toString();
+	}
+
+	private void awaitAnswers() throws InterruptedException {
+		synchronized (pending) {
+			while (pending.get() > 0)
+				pending.wait();
+		}
+	}
+
+	/**
+	 * Writes a line of output.  Lines from different workers never mix
+	 */
+	private void send(String line) {
+		synchronized (out) {
+			try {
+				out.write(line);
+				out.write('\n');
+				out.flush();
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * A position read from a query line
+	 */
+	private static class Query {
+
+		private int level = AiPlayer.HARD;
+		private Board board = new Board();
+		private Hand hand = new Hand();
+		private int tilesPlaced = -1;
+		private int deckSize = -1;
+		private int opponentTiles = HAND_SIZE;
+		private int unseen = -1;
+
+		//Copies of each kind seen so far, so every tile gets its own code
+		private int[] copies = new int[TileCode.KINDS];
+
+		/**
+		 * @param words the query line split into words
+		 * @throws IllegalArgumentException if the line isn't a valid query
+		 */
+		Query(String[] words) {
+			String section = null;
+			for (int i = 2; i < words.length; i++) {
+				String word = words[i];
+				if (word.equals("board") || word.equals("hand") || word.equals("unseen")) {
+					section = word;
+					if (word.equals("unseen"))
+						unseen = 0;
+				}
+				else if (word.equals("level") || word.equals("opponent") || word.equals("deck") || word.equals("placed")) {
+					if (++i == words.length)
+						throw new IllegalArgumentException(word + " needs a number");
+					setNumber(word, number(words[i]));
+					section = null;
+				}
+				else if ("board".equals(section))
+					placeTile(word);
+				else if ("hand".equals(section)) {
+					if (hand.getHandSize() == hand.getHandLength())
+						throw new IllegalArgumentException("hand holds more than " + hand.getHandLength() + " tiles");
+					hand.addTileCode(hand.findEmptySlot(), newCode(word));
+				}
+				else if ("unseen".equals(section)) {
+
+					//Checked, but only counted
+					kind(word);
+					unseen++;
+				}
+				else
+					throw new IllegalArgumentException("unexpected " + word);
+			}
+
+			if (hand.isEmpty())
+				throw new IllegalArgumentException("hand is empty");
+			if (tilesPlaced < 0)
+				tilesPlaced = board.getTileCount();
+			if (deckSize < 0) {
+				int hidden = unseen >= 0 ? unseen : Deck.MAX_SIZE - board.getTileCount() - hand.getHandSize();
+				deckSize = Math.max(0, hidden - opponentTiles);
+			}
+		}
+
+		private void setNumber(String word, int value) {
+			if (word.equals("level")) {
+				if (value < AiPlayer.EASY || value > AiPlayer.MASTER)
+					throw new IllegalArgumentException("no level " + value);
+				level = value;
+			}
+			else if (word.equals("opponent"))
+				opponentTiles = inRange(word, value, HAND_SIZE);
+			else if (word.equals("deck"))
+				deckSize = inRange(word, value, Deck.MAX_SIZE);
+			else
+				tilesPlaced = inRange(word, value, Deck.MAX_SIZE);
+		}
+
+		private static int inRange(String word, int value, int max) {
+			if (value < 0 || value > max)
+				throw new IllegalArgumentException(word + " must be 0 to " + max + ", not " + value);
+			return value;
+		}
+
+		private void placeTile(String word) {
+			String[] parts = word.split(",");
+			if (parts.length != 3)
+				throw new IllegalArgumentException("board tile " + word + " isn't X,Y,TILE");
+			int x = number(parts[0]);
+			int y = number(parts[1]);
+			if (x < -MAX_COORDINATE || x > MAX_COORDINATE || y < -MAX_COORDINATE || y > MAX_COORDINATE)
+				throw new IllegalArgumentException("board tile " + word + " is more than " + MAX_COORDINATE + " from the origin");
+			if (board.getTileCode(x, y) != TileCode.EMPTY)
+				throw new IllegalArgumentException("two tiles at " + x + "," + y);
+			board.placeTileCode(newCode(parts[2]), x, y);
+		}
+
+		private int newCode(String name) {
+			int kind = kind(name);
+			if (copies[kind] == TileCode.COPIES)
+				throw new IllegalArgumentException("more than " + TileCode.COPIES + " of " + name);
+			return TileCode.encode(kind / TileCode.SHAPES, kind % TileCode.SHAPES, copies[kind]++);
+		}
+
+		private static int kind(String name) {
+			int kind = TileCode.parseKind(name);
+			if (kind < 0)
+				throw new IllegalArgumentException("no tile " + name);
+			return kind;
+		}
+
+		private static int number(String word) {
+			try {
+				return Integer.parseInt(word);
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException("not a number: " + word);
+			}
+		}
+	}
+}
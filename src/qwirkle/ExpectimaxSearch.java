@@ -0,0 +1,439 @@
+package qwirkle;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * The Expert AI: an expectimax search over the AI's own next few turns and the tiles it
+ * draws between them.
+ * <p>
+ * The tiles the AI can't see (3 of each kind, less the board and its own hand) are the bag
+ * it draws from.  After each turn a chance node refills the hand: when one tile is drawn every
+ * kind is tried, weighted by how many are unseen, and when more are drawn a fixed number of
+ * random draws are sampled.  The opponent's reply is a chance node too: its hand is sampled
+ * from the unseen tiles and it plays Hard's best turn, so a turn that opens up a big score
+ * for the opponent is marked down.  Later turns and replies are weighted down, since the
+ * board will have changed by then.
+ * <p>
+ * Only the best few turns by immediate score are searched below the root, and values of
+ * positions reached again (by playing the same tiles in another order) come from a
+ * TranspositionTable.  The search deepens one turn at a time until it reaches its depth or
+ * runs out of time, so it always has an answer: the first iteration is Hard's choice.
+ * @author Gabriel Stackhouse
+ *
+ */
+public class ExpectimaxSearch {
+
+	public static final int DEFAULT_DEPTH = 2;
+	public static final long DEFAULT_BUDGET = 500; //milliseconds
+
+	//Turns searched at the root, and at each node below it
+	private static final int ROOT_WIDTH = 16;
+	private static final int WIDTH = 6;
+
+	//Draws, or opponent hands, sampled at a chance node
+	private static final int SAMPLES = 8;
+
+	//Weights of the next turn's value and of the opponent's reply, found by self-play
+	//against Hard
+	private static final double NEXT_WEIGHT = 0.7;
+	private static final double REPLY_WEIGHT = 0.5;
+
+	//Values are stored in the transposition table in 1/256ths of a point
+	private static final int SCALE = 256;
+
+	private final int depth;
+	private final long budget;
+	private final long nodeBudget;
+	private final TranspositionTable table;
+	private final TurnGenerator turnGenerator = new TurnGenerator();
+
+	//Position being searched.  The hand is a copy, with sampled draws put in its empty slots,
+	//and the opponent's hand holds sampled hands
+	private Hand hand;
+	private Hand opponent;
+	private Board board;
+	private int deckSize;
+	private int[] unseen = new int[TileCode.KINDS];
+	private int unseenCount;
+	private SplittableRandom random;
+
+	private long deadline;
+	private long maxNodes;
+	private boolean timedOut;
+	private long nodes;
+	private int depthReached;
+	private long startTime, endTime;
+	private double value;
+
+	//System.nanoTime() of the last call to stop
+	private volatile long stopTime = Long.MIN_VALUE;
+
+	/**
+	 * Constructs a search with the default depth and budget, and a 2MB transposition table
+	 */
+	public ExpectimaxSearch() {
+		this(DEFAULT_DEPTH, DEFAULT_BUDGET, new TranspositionTable(16));
+	}
+
+	/**
+	 * @param depth number of the AI's own turns to look at, 1 for Hard's one turn lookahead
+	 * @param budget time budget per turn in milliseconds, 0 for none
+	 * @param table transposition table, may be shared with other searches
+	 */
+	public ExpectimaxSearch(int depth, long budget, TranspositionTable table) {
+		this(depth, budget, 0, table);
+	}
+
+	/**
+	 * Constructs a search that can stop after a number of positions.  With no time budget it
+	 * always plays the same turn in the same position, however fast the machine
+	 * @param depth number of the AI's own turns to look at, 1 for Hard's one turn lookahead
+	 * @param budget time budget per turn in milliseconds, 0 for none
+	 * @param nodeBudget number of positions to search per turn, 0 for no limit
+	 * @param table transposition table, may be shared with other searches
+	 */
+	public ExpectimaxSearch(int depth, long budget, long nodeBudget, TranspositionTable table) {
+		this.depth = Math.max(depth, 1);
+		this.budget = budget;
+		this.nodeBudget = nodeBudget;
+		this.table = table;
+	}
+
+	/**
+	 * Finds the turn with the best expected score over the next turns, within the search's
+	 * time and node budgets
+	 * @param hand hand to play from, left unchanged
+	 * @param board game board, left unchanged
+	 * @param tilesPlaced number of tiles placed
+	 * @param deckSize number of tiles left in the deck
+	 * @return best turn found, null if no tile can be placed
+	 */
+	public Turn findBestTurn(Hand hand, Board board, int tilesPlaced, int deckSize) {
+		long deadline = budget > 0 ? System.nanoTime() + budget * 1000000 : Long.MAX_VALUE;
+		return findBestTurn(hand, board, tilesPlaced, deckSize, deadline, nodeBudget);
+	}
+
+	/**
+	 * Anytime search: searches one turn deeper each iteration, up to the search's depth,
+	 * until the deadline or node budget runs out.  The best turn of the deepest iteration is
+	 * kept, and each iteration searches the last one's best turns first.  An iteration cut
+	 * short still counts if it searched the last iteration's best turn
+	 * @param hand hand to play from, left unchanged
+	 * @param board game board, left unchanged
+	 * @param tilesPlaced number of tiles placed
+	 * @param deckSize number of tiles left in the deck
+	 * @param deadline System.nanoTime() to stop by, Long.MAX_VALUE for none
+	 * @param maxNodes number of positions to stop after, 0 for no limit
+	 * @return best turn found, null if no tile can be placed
+	 */
+	public Turn findBestTurn(Hand hand, Board board, int tilesPlaced, int deckSize, long deadline, long maxNodes) {
+		startTime = System.nanoTime();
+		endTime = startTime;
+		this.deadline = deadline;
+		this.maxNodes = maxNodes > 0 ? maxNodes : Long.MAX_VALUE;
+		timedOut = false;
+		nodes = 0;
+		depthReached = 0;
+		this.hand = new Hand(hand);
+		opponent = new Hand(hand);
+		for (int i = 0; i < opponent.getHandLength(); i++)
+			opponent.removeTileCode(i);
+		this.board = board;
+		this.deckSize = deckSize;
+		countUnseen();
+		random = new SplittableRandom(this.hand.getPositionKey(board, 0));
+		table.newSearch();
+
+		//Generation stops at the deadline too, after finding at least a few hundred turns, so
+		//there is always an answer
+		turnGenerator.setDeadline(deadline);
+		if (stopTime > startTime)
+			turnGenerator.setDeadline(Long.MIN_VALUE);
+		ArrayList<Turn> turns = turnGenerator.findTurns(this.hand, board, tilesPlaced);
+		if (turns.isEmpty())
+			return null;
+		sortByScore(turns);
+		while (turns.size() > ROOT_WIDTH)
+			turns.remove(turns.size() - 1);
+
+		Turn best = turns.get(0);
+		value = best.getScore();
+		double[] values = new double[turns.size()];
+		for (int d = 1; d <= depth && !timedOut; d++) {
+			int searched = 0;
+			for (; searched < turns.size(); searched++) {
+				values[searched] = getTurnValue(turns.get(searched), d);
+				if (timedOut)
+					break;
+			}
+			if (searched == 0)
+				break;
+
+			sortByValue(turns, values, searched);
+			best = turns.get(0);
+			value = values[0];
+			if (!timedOut)
+				depthReached = d;
+		}
+		endTime = System.nanoTime();
+		return best;
+	}
+
+	/**
+	 * Stops a search running on another thread, which returns its best turn so far.  A
+	 * search started after the call isn't affected
+	 */
+	public void stop() {
+		stopTime = System.nanoTime();
+
+		//Cut short a long turn generation too, which only checks its deadline
+		turnGenerator.setDeadline(Long.MIN_VALUE);
+	}
+
+	/**
+	 * Returns the number of positions searched by the last search
+	 * @return number of positions
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Returns the deepest iteration the last search finished
+	 * @return number of turns looked ahead
+	 */
+	public int getDepthReached() {
+		return depthReached;
+	}
+
+	/**
+	 * Returns how fast the last search went
+	 * @return positions searched per second
+	 */
+	public double getNodesPerSecond() {
+		long elapsed = endTime - startTime;
+		return elapsed > 0 ? nodes * 1e9 / elapsed : 0;
+	}
+
+	/**
+	 * Returns the expected score over the next turns of the turn found by the last search
+	 * @return expected score
+	 */
+	public double getValue() {
+		return value;
+	}
+
+	/**
+	 * Returns whether the last search ran out of time or nodes before its last iteration
+	 * finished
+	 * @return true if out of time or nodes
+	 */
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+
+	/**
+	 * Scores a turn, plus the expected value of the turns after it
+	 */
+	private double getTurnValue(Turn turn, int depth) {
+		nodes++;
+		int drawn = turn.size();
+		double result = hand.makeTurn(turn, board);
+		if (hand.isEmpty() && deckSize == 0)
+			result += GameEngine.END_BONUS;
+		else if (depth > 1)
+			result += NEXT_WEIGHT * getDrawValue(drawn, depth - 1) - REPLY_WEIGHT * getReplyValue();
+		hand.unmakeTurn(board);
+		return result;
+	}
+
+	/**
+	 * Chance node: the expected score of the opponent's best reply, over hands sampled from
+	 * the unseen tiles
+	 */
+	private double getReplyValue() {
+		int size = Math.min(Turn.MAX_TILES, unseenCount);
+		if (size == 0)
+			return 0;
+
+		double sum = 0;
+		int[] kinds = new int[size];
+		for (int s = 0; s < SAMPLES && !isOutOfTime(); s++) {
+			for (int i = 0; i < size; i++) {
+				kinds[i] = randomKind();
+				unseen[kinds[i]]--;
+				unseenCount--;
+				opponent.addTileCode(i, TileCode.encode(kinds[i] / TileCode.SHAPES, kinds[i] % TileCode.SHAPES, unseen[kinds[i]]));
+			}
+			Turn reply = turnGenerator.findBestTurn(opponent, board, board.getTileCount());
+			if (turnGenerator.isStopped())
+				timedOut = true;
+			else if (reply != null)
+				sum += reply.getScore();
+			for (int i = 0; i < size; i++) {
+				opponent.removeTileCode(i);
+				unseen[kinds[i]]++;
+				unseenCount++;
+			}
+		}
+		return sum / SAMPLES;
+	}
+
+	/**
+	 * Chance node: the expected value of the best turn after refilling the hand
+	 */
+	private double getDrawValue(int drawn, int depth) {
+		drawn = Math.min(drawn, deckSize);
+		if (drawn == 0)
+			return getBestValue(depth);
+
+		double sum = 0;
+		if (drawn == 1) {
+			int total = unseenCount;
+			for (int kind = 0; kind < TileCode.KINDS && !timedOut; kind++) {
+				int weight = unseen[kind];
+				if (weight == 0)
+					continue;
+				int slot = draw(kind);
+				sum += weight * getBestValue(depth);
+				undraw(slot);
+			}
+			return sum / total;
+		}
+
+		int[] slots = new int[drawn];
+		for (int s = 0; s < SAMPLES && !timedOut; s++) {
+			for (int i = 0; i < drawn; i++)
+				slots[i] = draw(randomKind());
+			sum += getBestValue(depth);
+			for (int i = drawn - 1; i >= 0; i--)
+				undraw(slots[i]);
+		}
+		return sum / SAMPLES;
+	}
+
+	/**
+	 * Decision node: the value of the best turn from the current hand
+	 */
+	private double getBestValue(int depth) {
+		long key = hand.getPositionKey(board, 0);
+		long data = table.probe(key);
+		if (data != TranspositionTable.MISS && TranspositionTable.getDepth(data) == depth)
+			return TranspositionTable.getScore(data) / (double) SCALE;
+
+		nodes++;
+		if (isOutOfTime())
+			return 0;
+
+		//A hand that can't play swaps or passes, which scores nothing
+		ArrayList<Turn> turns = turnGenerator.findTurns(hand, board, board.getTileCount());
+		if (turnGenerator.isStopped()) {
+			timedOut = true;
+			return 0;
+		}
+		double result = 0;
+		if (depth == 1) {
+			for (int i = 0; i < turns.size(); i++) {
+				Turn turn = turns.get(i);
+				int score = turn.getScore();
+				if (turn.size() == hand.getHandSize() && deckSize == 0)
+					score += GameEngine.END_BONUS;
+				result = Math.max(result, score);
+			}
+		}
+		else {
+			sortByScore(turns);
+			for (int i = 0; i < turns.size() && i < WIDTH && !timedOut; i++)
+				result = Math.max(result, getTurnValue(turns.get(i), depth));
+		}
+
+		if (!timedOut)
+			table.store(key, (int) Math.round(result * SCALE), depth, TranspositionTable.EXACT, 0);
+		return result;
+	}
+
+	/**
+	 * Checks the deadline and node budget, and stops the search once either runs out or it
+	 * was stopped
+	 */
+	private boolean isOutOfTime() {
+		if (!timedOut && (nodes >= maxNodes || System.nanoTime() > deadline || stopTime > startTime))
+			timedOut = true;
+		return timedOut;
+	}
+
+	/**
+	 * Counts the tiles of each kind not on the board or in the hand
+	 */
+	private void countUnseen() {
+		for (int kind = 0; kind < TileCode.KINDS; kind++)
+			unseen[kind] = TileCode.COPIES;
+		for (int i = 0; i < board.getTileCount(); i++)
+			unseen[TileCode.kind(board.getTileCode(board.getTileX(i), board.getTileY(i)))]--;
+		for (int i = 0; i < hand.getHandLength(); i++) {
+			if (hand.getTileCode(i) != TileCode.EMPTY)
+				unseen[TileCode.kind(hand.getTileCode(i))]--;
+		}
+		unseenCount = 0;
+		for (int kind = 0; kind < TileCode.KINDS; kind++) {
+			unseen[kind] = Math.max(unseen[kind], 0);
+			unseenCount += unseen[kind];
+		}
+	}
+
+	/**
+	 * Picks an unseen kind, weighted by how many are unseen
+	 */
+	private int randomKind() {
+		int pick = random.nextInt(unseenCount);
+		int kind = 0;
+		while (pick >= unseen[kind])
+			pick -= unseen[kind++];
+		return kind;
+	}
+
+	/**
+	 * Draws a tile of a kind into the first empty slot
+	 * @return slot drawn into
+	 */
+	private int draw(int kind) {
+		unseen[kind]--;
+		unseenCount--;
+		deckSize--;
+		int slot = hand.findEmptySlot();
+		hand.addTileCode(slot, TileCode.encode(kind / TileCode.SHAPES, kind % TileCode.SHAPES, unseen[kind]));
+		return slot;
+	}
+
+	private void undraw(int slot) {
+		int kind = TileCode.kind(hand.removeTileCode(slot));
+		unseen[kind]++;
+		unseenCount++;
+		deckSize++;
+	}
+
+	/**
+	 * Sorts the first turns by their values, best first, keeping the order of equal values.
+	 * There are only ROOT_WIDTH turns, so an insertion sort will do
+	 */
+	private static void sortByValue(ArrayList<Turn> turns, double[] values, int count) {
+		for (int i = 1; i < count; i++) {
+			Turn turn = turns.get(i);
+			double turnValue = values[i];
+			int j = i - 1;
+			for (; j >= 0 && values[j] < turnValue; j--) {
+				turns.set(j + 1, turns.get(j));
+				values[j + 1] = values[j];
+			}
+			turns.set(j + 1, turn);
+			values[j + 1] = turnValue;
+		}
+	}
+
+	/**
+	 * Sorts turns best score first, keeping the generator's order for equal scores
+	 */
+	private static void sortByScore(ArrayList<Turn> turns) {
+		turns.sort((a, b) -> Integer.compare(b.getScore(), a.getScore()));
+	}
+}
@@ -0,0 +1,400 @@
+package qwirkle;
+import java.util.SplittableRandom;
+
+/**
+ * Runs a game of Qwirkle without any user interface.  The engine owns the deck, board and
+ * both hands, and asks each Player in turn what to do.  A front end can drive it one turn at
+ * a time with playTurn, and draw the board in between, or call playGame to play a whole game
+ * as fast as the players can decide.  Every game is dealt from a seed, so it can be
+ * recorded with a GameRecorder and replayed later.
+ * @author Gabriel Stackhouse
+ *
+ */
+public class GameEngine {
+
+	public static final int PLAYERS = 2;
+
+	//Bonus for the player who uses their last tile when the deck is empty
+	public static final int END_BONUS = 6;
+
+	private Player[] players = new Player[PLAYERS];
+	private Hand[] hands = new Hand[PLAYERS];
+	private Deck deck;
+	private Board board;
+	private long seed;
+	private GameRecorder recorder;
+
+	private int currentPlayer;
+	private int tilesPlaced;
+	private int turnCount;
+	private int shuffleCount; //we're going to re-shuffle the deck every three rounds
+	private int passCount; //turns in a row where no tiles were placed or swapped
+	private boolean gameOver;
+	private Turn lastTurn;
+	private int lastType; //GameRecord.PLACE, SWAP or PASS, 0 before the first turn
+
+	/**
+	 * Constructs a game between two players and deals it
+	 * @param first player who moves first
+	 * @param second player who moves second
+	 */
+	public GameEngine(Player first, Player second) {
+		players[0] = first;
+		players[1] = second;
+		newGame();
+	}
+
+	/**
+	 * Constructs a game between two players and deals it from a seeded deck.  Games with the
+	 * same seed and players play out exactly the same
+	 * @param first player who moves first
+	 * @param second player who moves second
+	 * @param seed seed for shuffling the deck
+	 */
+	public GameEngine(Player first, Player second, long seed) {
+		players[0] = first;
+		players[1] = second;
+		newGame(seed);
+	}
+
+	/**
+	 * Deals a new game with a fresh deck and board, keeping the players
+	 */
+	public void newGame() {
+		newGame(new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * Deals a new game from a seeded deck, keeping the players
+	 * @param seed seed for shuffling the deck
+	 */
+	public void newGame(long seed) {
+		this.seed = seed;
+		deck = new Deck(new SplittableRandom(seed));
+		board = new Board();
+		for (int i = 0; i < PLAYERS; i++)
+			hands[i] = new Hand(deck);
+		currentPlayer = 0;
+		tilesPlaced = 0;
+		turnCount = 0;
+		shuffleCount = 0;
+		passCount = 0;
+		gameOver = false;
+		lastTurn = null;
+		lastType = 0;
+		if (recorder != null)
+			recorder.startGame(this);
+	}
+
+	/**
+	 * Records this game, if it hasn't started yet, and every game dealt after it
+	 * @param recorder recorder to add the games to, null to stop recording
+	 */
+	public void setRecorder(GameRecorder recorder) {
+		this.recorder = recorder;
+		if (recorder != null && turnCount == 0)
+			recorder.startGame(this);
+	}
+
+	/**
+	 * Plays turns until the game is over
+	 */
+	public void playGame() {
+		while (!gameOver)
+			playTurn();
+	}
+
+	/**
+	 * Asks the current player for their turn and plays it.  A turn the rules don't allow is
+	 * treated as a pass
+	 * @return true if the game is still going
+	 */
+	public boolean playTurn() {
+		if (gameOver)
+			return false;
+
+		Player player = players[currentPlayer];
+		Hand hand = hands[currentPlayer];
+		lastTurn = null;
+
+		Turn turn = player.chooseTurn(this, hand);
+		if (turn != null && play(turn)) {
+			lastTurn = turn;
+			lastType = GameRecord.PLACE;
+		}
+		else if (turn == null && swap(player.chooseSwap(this, hand))) {
+			passCount = 0;
+			lastType = GameRecord.SWAP;
+		}
+		else {
+			passCount++;
+			lastType = GameRecord.PASS;
+			if (recorder != null)
+				recorder.recordTurn(GameRecord.PASS, currentPlayer, null, hand);
+		}
+
+		endTurn();
+		return !gameOver;
+	}
+
+	/**
+	 * Places a turn's tiles from the current player's hand, scores it and refills the hand.
+	 * Nothing changes if the turn breaks the rules
+	 * @param turn tiles to place
+	 * @return true if the turn was played
+	 */
+	private boolean play(Turn turn) {
+		Hand hand = hands[currentPlayer];
+		if (!isValidTurn(turn, hand, board, tilesPlaced))
+			return false;
+
+		for (int i = 0; i < turn.size(); i++)
+			board.placeTileCode(hand.removeTileCode(turn.getIndex(i)), turn.getX(i), turn.getY(i));
+		tilesPlaced += turn.size();
+
+		turn.setScore(TurnGenerator.scoreTurn(board, turn));
+		hand.addToScore(turn.getScore());
+		hand.fillHand(deck);
+		passCount = 0;
+		if (recorder != null)
+			recorder.recordTurn(GameRecord.PLACE, currentPlayer, turn, hand);
+		return true;
+	}
+
+	/**
+	 * Puts the chosen tiles of the current player's hand in the deck, then refills the hand
+	 * @param toSwap true for each hand index to swap, may be null
+	 * @return true if any tiles were swapped
+	 */
+	private boolean swap(boolean[] toSwap) {
+		if (toSwap == null)
+			return false;
+
+		Hand hand = hands[currentPlayer];
+		int count = 0;
+		for (int i = 0; i < toSwap.length && i < hand.getHandLength(); i++) {
+			if (toSwap[i] && hand.getTileCode(i) != TileCode.EMPTY)
+				count++;
+		}
+		if (count == 0 || count > deck.getSize())
+			return false;
+
+		Turn swapped = new Turn();
+		for (int i = 0; i < toSwap.length && i < hand.getHandLength(); i++) {
+			if (toSwap[i] && hand.getTileCode(i) != TileCode.EMPTY) {
+				swapped.add(hand.getTileCode(i), i, 0, 0);
+				hand.putTileInDeck(deck, i);
+			}
+		}
+		hand.fillHand(deck);
+		if (recorder != null)
+			recorder.recordTurn(GameRecord.SWAP, currentPlayer, swapped, hand);
+		return true;
+	}
+
+	private void endTurn() {
+		turnCount++;
+
+		//The player who empties their hand once the deck is gone ends the game
+		Hand hand = hands[currentPlayer];
+		if (deck.isEmpty() && hand.isEmpty()) {
+			hand.addToScore(END_BONUS);
+			gameOver = true;
+			if (recorder != null)
+				recorder.endGame(this, true);
+			return;
+		}
+
+		//Nobody can move
+		if (passCount >= PLAYERS) {
+			gameOver = true;
+			if (recorder != null)
+				recorder.endGame(this, false);
+			return;
+		}
+
+		//Shuffle deck every three rounds
+		if (currentPlayer == PLAYERS - 1) {
+			if (shuffleCount < 3)
+				shuffleCount++;
+			else if (!deck.isEmpty()) {
+				deck.shuffle();
+				shuffleCount = 0;
+			}
+		}
+
+		currentPlayer = (currentPlayer + 1) % PLAYERS;
+	}
+
+	/**
+	 * Checks if a turn may be played from a hand.  Every tile must be in the hand, make a
+	 * valid move, and share a single row or column with the rest of the turn with no gaps
+	 * @param turn tiles to place
+	 * @param hand hand the tiles come from
+	 * @param board game board, left unchanged
+	 * @param tilesPlaced number of tiles placed
+	 * @return true if the turn is valid
+	 */
+	public static boolean isValidTurn(Turn turn, Hand hand, Board board, int tilesPlaced) {
+		if (turn.size() == 0)
+			return false;
+
+		//Place the tiles one at a time, so each is checked against the ones before it
+		boolean valid = true;
+		int placed = 0;
+		Turn partial = new Turn();
+		for (; placed < turn.size() && valid; placed++) {
+			int code = hand.getTileCode(turn.getIndex(placed));
+			int x = turn.getX(placed);
+			int y = turn.getY(placed);
+			valid = code == turn.getTileCode(placed) && !isUsed(turn, placed) &&
+					hand.isValidMove(x, y, code, board, tilesPlaced + placed) && fitsTurn(partial, x, y, board);
+			if (valid) {
+				board.makeMove(code, x, y);
+				partial.add(code, turn.getIndex(placed), x, y);
+			}
+		}
+
+		for (int i = 0; i < partial.size(); i++)
+			board.unmakeMove();
+		return valid;
+	}
+
+	/**
+	 * Checks if a placement's hand index was already used earlier in the turn
+	 */
+	private static boolean isUsed(Turn turn, int placement) {
+		for (int i = 0; i < placement; i++) {
+			if (turn.getIndex(i) == turn.getIndex(placement))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if a tile placed at a location would be in the same line as the rest of the turn,
+	 * with no gaps between them
+	 * @param turn tiles placed so far this turn, already on the board
+	 * @param x x position on board
+	 * @param y y position on board
+	 * @param board game board
+	 * @return true if the location fits the turn
+	 */
+	public static boolean fitsTurn(Turn turn, int x, int y, Board board) {
+		if (turn.size() == 0)
+			return true;
+
+		//Tiles must share a row or column, and keep the direction of the first two
+		int firstX = turn.getX(0);
+		int firstY = turn.getY(0);
+		boolean sameRow = y == firstY;
+		boolean sameColumn = x == firstX;
+		if (turn.size() > 1) {
+			boolean isRow = turn.getY(1) == firstY;
+			sameRow &= isRow;
+			sameColumn &= !isRow;
+		}
+		if (!sameRow && !sameColumn)
+			return false;
+
+		//No gaps between the new tile and the first one
+		int dx = Integer.signum(firstX - x);
+		int dy = Integer.signum(firstY - y);
+		for (int i = 1; x + i * dx != firstX || y + i * dy != firstY; i++) {
+			if (board.getTileCode(x + i * dx, y + i * dy) == TileCode.EMPTY)
+				return false;
+		}
+		return true;
+	}
+
+	public boolean isGameOver() {
+		return gameOver;
+	}
+
+	/**
+	 * Returns the player with the highest score
+	 * @return index of the winner, -1 for a tie
+	 */
+	public int getWinner() {
+		int winner = 0;
+		boolean tie = false;
+		for (int i = 1; i < PLAYERS; i++) {
+			if (hands[i].getScore() > hands[winner].getScore()) {
+				winner = i;
+				tie = false;
+			}
+			else if (hands[i].getScore() == hands[winner].getScore())
+				tie = true;
+		}
+		return tie ? -1 : winner;
+	}
+
+	public Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * Returns the seed the game was dealt from
+	 * @return seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	public Deck getDeck() {
+		return deck;
+	}
+
+	public Hand getHand(int player) {
+		return hands[player];
+	}
+
+	public Player getPlayer(int player) {
+		return players[player];
+	}
+
+	/**
+	 * Replaces a player, keeping their hand and score
+	 * @param player index of the player
+	 * @param strategy the new player
+	 */
+	public void setPlayer(int player, Player strategy) {
+		players[player] = strategy;
+	}
+
+	public int getScore(int player) {
+		return hands[player].getScore();
+	}
+
+	/**
+	 * Returns the index of the player whose turn it is
+	 * @return 0 for the first player, 1 for the second
+	 */
+	public int getCurrentPlayer() {
+		return currentPlayer;
+	}
+
+	public int getTilesPlaced() {
+		return tilesPlaced;
+	}
+
+	public int getTurnCount() {
+		return turnCount;
+	}
+
+	/**
+	 * Returns the tiles placed by the last turn played
+	 * @return last turn, null if it was a swap or a pass
+	 */
+	public Turn getLastTurn() {
+		return lastTurn;
+	}
+
+	/**
+	 * Returns what the last turn played did
+	 * @return GameRecord.PLACE, SWAP or PASS, 0 if no turn has been played
+	 */
+	public int getLastTurnType() {
+		return lastType;
+	}
+}
@@ -0,0 +1,177 @@
+package qwirkle;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a game record file by memory-mapping it, so a corpus of millions of games can be
+ * scanned or replayed without reading it into the heap.
+ * <p>
+ * A mapping can't be larger than 2 GB, so the file is mapped in 1 GB segments.  Each
+ * segment also maps the largest game past its end, so a game is always read whole from
+ * the segment it starts in.  Opening the file finds where each game starts by reading
+ * only the headers.  A game cut short at the end of the file (a writer that was stopped
+ * part way) is left out.
+ * <p>
+ * Usage: GameReader file [game].  Without a game number, every game is replayed through
+ * the engine and checked against its record; with one, that game is printed turn by turn.
+ * @author Gabriel Stackhouse
+ *
+ */
+public class GameReader implements Closeable {
+
+	private static final int SEGMENT_BITS = 30;
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer[] segments;
+	private long[] offsets = new long[1024];
+	private int games;
+	private long size;
+
+	/**
+	 * Maps a file and finds its games
+	 * @param path game record file
+	 * @throws IOException if the file can't be read or isn't a game record file
+	 */
+	public GameReader(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		long length = channel.size();
+		segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+		for (int i = 0; i < segments.length; i++) {
+			long start = (long) i << SEGMENT_BITS;
+			long mapped = Math.min(SEGMENT_SIZE + GameRecord.MAX_SIZE, length - start);
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, mapped);
+		}
+
+		//Jump from header to header
+		long at = 0;
+		while (at + GameRecord.HEADER_SIZE <= length) {
+			MappedByteBuffer segment = segments[(int) (at >>> SEGMENT_BITS)];
+			int local = (int) (at & (SEGMENT_SIZE - 1));
+			if (segment.getInt(local + GameRecord.H_MAGIC) != GameRecord.MAGIC ||
+					segment.get(local + GameRecord.H_VERSION) != GameRecord.VERSION)
+				throw new IOException("Not a game record at byte " + at + " of " + path);
+			int turns = segment.getInt(local + GameRecord.H_TURNS);
+			if (turns < 0 || turns > GameRecord.MAX_TURNS)
+				throw new IOException("Bad turn count " + turns + " at byte " + at + " of " + path);
+			long next = at + GameRecord.size(turns);
+			if (next > length)
+				break;
+			if (games == offsets.length)
+				offsets = Arrays.copyOf(offsets, games * 2);
+			offsets[games++] = at;
+			at = next;
+		}
+		size = at;
+	}
+
+	/**
+	 * Returns the number of whole games in the file
+	 * @return number of games
+	 */
+	public int getGameCount() {
+		return games;
+	}
+
+	/**
+	 * Returns the number of bytes of whole games
+	 * @return size in bytes
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns a game, read in place from the mapped file.  Safe to call from many threads
+	 * @param game game number, from 0 in the order written
+	 * @return the game
+	 */
+	public GameRecord getGame(int game) {
+		if (game < 0 || game >= games)
+			throw new IndexOutOfBoundsException("Game " + game + " of " + games);
+		long at = offsets[game];
+		return new GameRecord(segments[(int) (at >>> SEGMENT_BITS)], (int) (at & (SEGMENT_SIZE - 1)));
+	}
+
+	/**
+	 * Closes the file.  Games already returned can still be read until the mappings are
+	 * garbage collected
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: GameReader file [game]");
+			return;
+		}
+
+		try (GameReader reader = new GameReader(Paths.get(args[0]))) {
+			if (args.length > 1)
+				print(reader.getGame(Integer.parseInt(args[1])));
+			else
+				check(reader);
+		}
+	}
+
+	/**
+	 * Replays every game and checks it ends as recorded
+	 */
+	private static void check(GameReader reader) {
+		long start = System.nanoTime();
+		long turns = 0;
+		int bad = 0;
+		for (int i = 0; i < reader.getGameCount(); i++) {
+			GameRecord record = reader.getGame(i);
+			turns += record.getTurnCount();
+			try {
+				GameEngine engine = record.replay();
+				if (engine.getScore(0) != record.getScore(0) || engine.getScore(1) != record.getScore(1))
+					throw new IllegalStateException("Final scores don't match the record");
+			}
+			catch (IllegalStateException e) {
+				if (bad++ < 10)
+					System.out.println("Game " + i + ": " + e.getMessage());
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d games, %d turns, %.1f MB%n", reader.getGameCount(), turns, reader.getSize() / 1e6);
+		System.out.printf("Replayed in %.2f s, %.0f games/sec, %d didn't match%n", seconds,
+				reader.getGameCount() / seconds, bad);
+	}
+
+	private static void print(GameRecord record) {
+		String[] types = {"", "Place", "Swap", "Pass"};
+		System.out.printf("Seed %d, %s vs %s, final score %d - %d%n", record.getSeed(),
+				levelName(record.getLevel(0)), levelName(record.getLevel(1)), record.getScore(0), record.getScore(1));
+		for (int t = 0; t < record.getTurnCount(); t++) {
+			int type = record.getType(t);
+			StringBuilder line = new StringBuilder(String.format("%3d  P%d %-5s", t, record.getPlayer(t) + 1, types[type]));
+			for (int i = 0; i < record.getTileCount(t); i++) {
+				line.append(' ').append(TileCode.name(record.getTileCode(t, i)));
+				if (type == GameRecord.PLACE)
+					line.append('(').append(record.getX(t, i)).append(',').append(record.getY(t, i)).append(')');
+			}
+			if (type == GameRecord.PLACE)
+				line.append("  +").append(record.getTurnScore(t));
+			if (record.isEnded(t))
+				line.append(" +").append(GameEngine.END_BONUS).append(" end");
+			line.append("  drew");
+			for (int i = 0; i < record.getDrawCount(t); i++)
+				line.append(' ').append(TileCode.name(record.getDraw(t, i)));
+			System.out.println(line);
+		}
+	}
+
+	private static String levelName(int level) {
+		return level == GameRecord.HUMAN ? "Human" : new AiPlayer(level).toString();
+	}
+}
@@ -0,0 +1,286 @@
+package qwirkle;
+import java.nio.ByteBuffer;
+
+/**
+ * One recorded game, read in place from a buffer holding the binary game record format.
+ * Nothing is copied out of the buffer, so a GameRecord over a memory-mapped corpus costs
+ * nothing until a field is read.
+ * <p>
+ * A game is a 32 byte header followed by one 32 byte record per turn, all big-endian.
+ * The header holds the deck seed, the AI level in each seat, the final scores and the
+ * number of turns.  A turn record holds what was played (placements, a swap or a pass),
+ * the points scored and the tiles drawn after it.  Tile codes are unique within a game
+ * (see TileCode), so placements and swaps store codes, and the hand slot is found again on
+ * replay.  Placed tiles share a line, so only the first tile's position is stored, with
+ * each tile's offset along the line.
+ * <p>
+ * Games are dealt from a seeded deck, so replay deals the same game again and feeds the
+ * recorded turns to the engine.
+ * @author Gabriel Stackhouse
+ *
+ */
+public class GameRecord {
+
+	/** Marks the start of every game: "QWGR" */
+	public static final int MAGIC = 0x51574752;
+	public static final int VERSION = 1;
+
+	public static final int HEADER_SIZE = 32;
+	public static final int TURN_SIZE = 32;
+
+	/** Longest game that can be recorded, in turns */
+	public static final int MAX_TURNS = 4096;
+	public static final int MAX_SIZE = HEADER_SIZE + MAX_TURNS * TURN_SIZE;
+
+	/** Level of a seat that wasn't an AiPlayer */
+	public static final int HUMAN = -1;
+
+	//Turn types
+	public static final int PLACE = 1;
+	public static final int SWAP = 2;
+	public static final int PASS = 3;
+
+	/** Turn flag: the player used their last tile and scored the end bonus */
+	public static final int ENDED = 1;
+
+	//Header layout
+	static final int H_MAGIC = 0;
+	static final int H_VERSION = 4;
+	static final int H_LEVELS = 5; //one byte per seat
+	static final int H_WINNER = 7;
+	static final int H_SEED = 8;
+	static final int H_TURNS = 16;
+	static final int H_SCORES = 20; //one short per seat
+
+	//Turn layout
+	static final int T_TYPE = 0;
+	static final int T_PLAYER = 1;
+	static final int T_COUNT = 2;
+	static final int T_FLAGS = 3;
+	static final int T_SCORE = 4;
+	static final int T_X = 6;
+	static final int T_Y = 8;
+	static final int T_COLUMN = 10; //1 if placed tiles share a column, 0 for a row
+	static final int T_DRAWN = 11;
+	static final int T_DRAWS = 12; //one code per tile drawn
+	static final int T_CODES = 18; //one code per tile placed or swapped
+	static final int T_OFFSETS = 24; //one signed byte per tile placed
+
+	private final ByteBuffer buffer;
+	private final int offset;
+
+	/**
+	 * @param buffer buffer holding the game, read with absolute gets only
+	 * @param offset position of the game's header in the buffer
+	 */
+	public GameRecord(ByteBuffer buffer, int offset) {
+		this.buffer = buffer;
+		this.offset = offset;
+	}
+
+	/**
+	 * Returns the size of a game in bytes
+	 * @param turns number of turns
+	 * @return size of the header and turns
+	 */
+	public static int size(int turns) {
+		return HEADER_SIZE + turns * TURN_SIZE;
+	}
+
+	public int getSize() {
+		return size(getTurnCount());
+	}
+
+	public long getSeed() {
+		return buffer.getLong(offset + H_SEED);
+	}
+
+	/**
+	 * @param seat 0 for the player who moved first, 1 for the second
+	 * @return AI level (see AiPlayer), HUMAN if not an AI
+	 */
+	public int getLevel(int seat) {
+		return buffer.get(offset + H_LEVELS + seat);
+	}
+
+	/**
+	 * @return seat of the winner, -1 for a tie
+	 */
+	public int getWinner() {
+		return buffer.get(offset + H_WINNER);
+	}
+
+	/**
+	 * @param seat 0 for the player who moved first, 1 for the second
+	 * @return final score
+	 */
+	public int getScore(int seat) {
+		return buffer.getShort(offset + H_SCORES + 2 * seat);
+	}
+
+	public int getTurnCount() {
+		return buffer.getInt(offset + H_TURNS);
+	}
+
+	/**
+	 * @param turn turn number, from 0
+	 * @return PLACE, SWAP or PASS
+	 */
+	public int getType(int turn) {
+		return buffer.get(turnOffset(turn) + T_TYPE);
+	}
+
+	/**
+	 * @param turn turn number, from 0
+	 * @return seat of the player who moved
+	 */
+	public int getPlayer(int turn) {
+		return buffer.get(turnOffset(turn) + T_PLAYER);
+	}
+
+	/**
+	 * @param turn turn number, from 0
+	 * @return number of tiles placed or swapped
+	 */
+	public int getTileCount(int turn) {
+		return buffer.get(turnOffset(turn) + T_COUNT);
+	}
+
+	/**
+	 * @param turn turn number, from 0
+	 * @return points scored by the turn, without the end bonus
+	 */
+	public int getTurnScore(int turn) {
+		return buffer.getShort(turnOffset(turn) + T_SCORE);
+	}
+
+	/**
+	 * @param turn turn number, from 0
+	 * @return true if the player used their last tile and ended the game
+	 */
+	public boolean isEnded(int turn) {
+		return (buffer.get(turnOffset(turn) + T_FLAGS) & ENDED) != 0;
+	}
+
+	/**
+	 * @param turn turn number, from 0
+	 * @param i tile number, below getTileCount
+	 * @return code of a tile placed or swapped
+	 */
+	public int getTileCode(int turn, int i) {
+		return buffer.get(turnOffset(turn) + T_CODES + i) & 0xFF;
+	}
+
+	/**
+	 * @param turn turn number, from 0, which must be a PLACE
+	 * @param i tile number, below getTileCount
+	 * @return x position the tile was placed at
+	 */
+	public int getX(int turn, int i) {
+		int base = turnOffset(turn);
+		int x = buffer.getShort(base + T_X);
+		return buffer.get(base + T_COLUMN) == 0 ? x + buffer.get(base + T_OFFSETS + i) : x;
+	}
+
+	/**
+	 * @param turn turn number, from 0, which must be a PLACE
+	 * @param i tile number, below getTileCount
+	 * @return y position the tile was placed at
+	 */
+	public int getY(int turn, int i) {
+		int base = turnOffset(turn);
+		int y = buffer.getShort(base + T_Y);
+		return buffer.get(base + T_COLUMN) != 0 ? y + buffer.get(base + T_OFFSETS + i) : y;
+	}
+
+	/**
+	 * @param turn turn number, from 0
+	 * @return number of tiles drawn from the deck after the turn
+	 */
+	public int getDrawCount(int turn) {
+		return buffer.get(turnOffset(turn) + T_DRAWN);
+	}
+
+	/**
+	 * @param turn turn number, from 0
+	 * @param i draw number, below getDrawCount
+	 * @return code of a tile drawn, in the order drawn
+	 */
+	public int getDraw(int turn, int i) {
+		return buffer.get(turnOffset(turn) + T_DRAWS + i) & 0xFF;
+	}
+
+	/**
+	 * Deals the game again and plays every recorded turn
+	 * @return engine at the end of the game
+	 */
+	public GameEngine replay() {
+		return replay(getTurnCount());
+	}
+
+	/**
+	 * Deals the game again and plays the first turns of it
+	 * @param turns number of turns to play
+	 * @return engine after the turns
+	 * @throws IllegalStateException if the engine scores a turn differently than recorded
+	 */
+	public GameEngine replay(int turns) {
+		turns = Math.min(turns, getTurnCount());
+		Replayer replayer = new Replayer();
+		GameEngine engine = new GameEngine(replayer, replayer, getSeed());
+		for (int t = 0; t < turns; t++) {
+			replayer.turn = t;
+			engine.playTurn();
+			Turn played = engine.getLastTurn();
+			int score = played == null ? 0 : played.getScore();
+			if ((played != null) != (getType(t) == PLACE) || score != getTurnScore(t))
+				throw new IllegalStateException("Game record doesn't match the engine at turn " + t);
+		}
+		return engine;
+	}
+
+	private int turnOffset(int turn) {
+		return offset + HEADER_SIZE + turn * TURN_SIZE;
+	}
+
+	/**
+	 * Plays both seats from the record
+	 */
+	private class Replayer implements Player {
+
+		private int turn;
+
+		@Override
+		public Turn chooseTurn(GameEngine game, Hand hand) {
+			if (getType(turn) != PLACE)
+				return null;
+			Turn result = new Turn();
+			for (int i = 0; i < getTileCount(turn); i++) {
+				int code = getTileCode(turn, i);
+				result.add(code, findSlot(hand, code), getX(turn, i), getY(turn, i));
+			}
+			return result;
+		}
+
+		@Override
+		public boolean[] chooseSwap(GameEngine game, Hand hand) {
+			if (getType(turn) != SWAP)
+				return null;
+			boolean[] toSwap = new boolean[hand.getHandLength()];
+			for (int i = 0; i < getTileCount(turn); i++) {
+				int slot = findSlot(hand, getTileCode(turn, i));
+				if (slot >= 0)
+					toSwap[slot] = true;
+			}
+			return toSwap;
+		}
+
+		private int findSlot(Hand hand, int code) {
+			for (int i = 0; i < hand.getHandLength(); i++) {
+				if (hand.getTileCode(i) == code)
+					return i;
+			}
+			return -1;
+		}
+	}
+}
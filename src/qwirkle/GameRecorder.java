@@ -0,0 +1,156 @@
+package qwirkle;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Records games in the binary format read by GameRecord, as a GameEngine plays them.  Give
+ * it to an engine with GameEngine.setRecorder; the engine starts a game in it on every deal
+ * and adds a turn record after every turn.
+ * <p>
+ * One recorder can hold many games one after another, so a batch of games can be written
+ * with a single GameWriter.write.  Only finished games are written.
+ * @author Gabriel Stackhouse
+ *
+ */
+public class GameRecorder {
+
+	private byte[] bytes = new byte[64 * GameRecord.TURN_SIZE];
+	private ByteBuffer buffer = ByteBuffer.wrap(bytes);
+	private int gameStart; //header of the game being recorded
+	private int end; //end of the last turn recorded
+	private int finished; //end of the last finished game
+	private int turns;
+	private boolean recording;
+
+	/**
+	 * Starts a new game, dropping the current one if it didn't finish
+	 * @param engine engine that dealt the game
+	 */
+	void startGame(GameEngine engine) {
+		end = finished;
+		gameStart = end;
+		turns = 0;
+		recording = true;
+		ensureRoom(GameRecord.HEADER_SIZE);
+		Arrays.fill(bytes, gameStart, gameStart + GameRecord.HEADER_SIZE, (byte) 0);
+		buffer.putInt(gameStart + GameRecord.H_MAGIC, GameRecord.MAGIC);
+		buffer.put(gameStart + GameRecord.H_VERSION, (byte) GameRecord.VERSION);
+		for (int seat = 0; seat < GameEngine.PLAYERS; seat++) {
+			Player player = engine.getPlayer(seat);
+			int level = player instanceof AiPlayer ? ((AiPlayer) player).getDifficulty() : GameRecord.HUMAN;
+			buffer.put(gameStart + GameRecord.H_LEVELS + seat, (byte) level);
+		}
+		buffer.putLong(gameStart + GameRecord.H_SEED, engine.getSeed());
+		end += GameRecord.HEADER_SIZE;
+	}
+
+	/**
+	 * Records a turn, after the hand has been refilled
+	 * @param type GameRecord.PLACE, SWAP or PASS
+	 * @param player seat of the player who moved
+	 * @param turn tiles placed or swapped (with their hand slots), null for a pass
+	 * @param hand the player's hand
+	 */
+	void recordTurn(int type, int player, Turn turn, Hand hand) {
+		if (!recording)
+			return;
+		if (turns == GameRecord.MAX_TURNS)
+			throw new IllegalStateException("Game is too long to record: " + turns + " turns");
+
+		ensureRoom(GameRecord.TURN_SIZE);
+		int base = end;
+		Arrays.fill(bytes, base, base + GameRecord.TURN_SIZE, (byte) 0);
+		buffer.put(base + GameRecord.T_TYPE, (byte) type);
+		buffer.put(base + GameRecord.T_PLAYER, (byte) player);
+		if (turn != null) {
+			buffer.put(base + GameRecord.T_COUNT, (byte) turn.size());
+			for (int i = 0; i < turn.size(); i++)
+				buffer.put(base + GameRecord.T_CODES + i, (byte) turn.getTileCode(i));
+
+			//The hand is filled in slot order, so the slots emptied by the turn hold the draws
+			int emptied = 0;
+			for (int i = 0; i < turn.size(); i++)
+				emptied |= 1 << turn.getIndex(i);
+			int drawn = 0;
+			for (int slot = 0; slot < hand.getHandLength(); slot++) {
+				if ((emptied & 1 << slot) != 0 && hand.getTileCode(slot) != TileCode.EMPTY)
+					buffer.put(base + GameRecord.T_DRAWS + drawn++, (byte) hand.getTileCode(slot));
+			}
+			buffer.put(base + GameRecord.T_DRAWN, (byte) drawn);
+		}
+		if (type == GameRecord.PLACE)
+			putPlacements(base, turn);
+
+		end += GameRecord.TURN_SIZE;
+		turns++;
+	}
+
+	private void putPlacements(int base, Turn turn) {
+		int x = turn.getX(0);
+		int y = turn.getY(0);
+		boolean column = turn.size() > 1 && turn.getX(1) == x;
+		buffer.putShort(base + GameRecord.T_SCORE, (short) turn.getScore());
+		buffer.putShort(base + GameRecord.T_X, (short) x);
+		buffer.putShort(base + GameRecord.T_Y, (short) y);
+		buffer.put(base + GameRecord.T_COLUMN, (byte) (column ? 1 : 0));
+		for (int i = 0; i < turn.size(); i++) {
+			int offset = column ? turn.getY(i) - y : turn.getX(i) - x;
+			if (offset != (byte) offset)
+				throw new IllegalArgumentException("Turn is too long to record: " + offset);
+			buffer.put(base + GameRecord.T_OFFSETS + i, (byte) offset);
+		}
+	}
+
+	/**
+	 * Finishes the game with its final scores
+	 * @param engine engine that played the game
+	 * @param bonus true if the last player used their last tile and scored the end bonus
+	 */
+	void endGame(GameEngine engine, boolean bonus) {
+		if (!recording)
+			return;
+		if (bonus && turns > 0) {
+			int flags = end - GameRecord.TURN_SIZE + GameRecord.T_FLAGS;
+			buffer.put(flags, (byte) (buffer.get(flags) | GameRecord.ENDED));
+		}
+		buffer.put(gameStart + GameRecord.H_WINNER, (byte) engine.getWinner());
+		buffer.putInt(gameStart + GameRecord.H_TURNS, turns);
+		for (int seat = 0; seat < GameEngine.PLAYERS; seat++)
+			buffer.putShort(gameStart + GameRecord.H_SCORES + 2 * seat, (short) engine.getScore(seat));
+		finished = end;
+		recording = false;
+	}
+
+	/**
+	 * Returns the number of bytes of finished games held
+	 * @return size in bytes
+	 */
+	public int getSize() {
+		return finished;
+	}
+
+	/**
+	 * Returns the finished games
+	 * @return buffer from the first finished game to the end of the last
+	 */
+	public ByteBuffer getFinished() {
+		return ByteBuffer.wrap(bytes, 0, finished);
+	}
+
+	/**
+	 * Drops the finished games, once they have been written.  A game being recorded is kept
+	 */
+	public void clear() {
+		System.arraycopy(bytes, finished, bytes, 0, end - finished);
+		gameStart -= finished;
+		end -= finished;
+		finished = 0;
+	}
+
+	private void ensureRoom(int size) {
+		if (end + size > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, end + size));
+			buffer = ByteBuffer.wrap(bytes);
+		}
+	}
+}
@@ -0,0 +1,540 @@
+package qwirkle;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hosts games of a remote player against an AI over TCP, many at once.
+ * <p>
+ * One thread runs a non-blocking Selector over every connection, and only reads requests
+ * and writes replies.  Each connection is a session with its own GameEngine, in which the
+ * remote player has the first seat and the AI the second.  A request is played on a worker
+ * pool of fixed size, together with the AI's reply turn, so a slow AI never holds up other
+ * connections.  Each worker keeps its own AiPlayer for every level, so searches never share
+ * state between threads, and the Master AI searches on its worker alone.  A session has at
+ * most one request being played; a request sent before the last one was answered, or when
+ * the pool's queue is full, is answered with a BUSY error.
+ * <p>
+ * Every message is a frame: a two byte length, then the message, big-endian.  The first
+ * byte of a message is its type.  Requests:
+ * <pre>
+ * NEW_GAME  level (byte), seed (long)            deals a new game; the client moves first
+ * PLACE     count (byte), then for each tile:     places tiles from the hand
+ *           slot (byte), x (short), y (short)
+ * SWAP      slots (byte, a bit per hand slot)     swaps tiles with the deck
+ * PASS                                            passes
+ * </pre>
+ * Replies:
+ * <pre>
+ * STATE  flags (byte, GAME_OVER), the client's turn score (short), both scores (short
+ *        each), tiles in the deck (byte), hand size (byte) and each slot's tile code (byte,
+ *        0 if empty), the AI's turn type (byte, GameRecord.PLACE, SWAP or PASS, 0 if it
+ *        didn't move), its score (short), tile count (byte), and for each tile placed:
+ *        code (byte), x (short), y (short)
+ * ERROR  error code (byte): BUSY, ILLEGAL, NO_GAME or BAD_REQUEST
+ * </pre>
+ * A turn that breaks the rules is answered with ILLEGAL and the game is left as it was.
+ * <p>
+ * Usage: GameServer [port] [workers].  The server prints the number of sessions, games in
+ * progress and the turn latency every few seconds.  See LoadGenerator to test it.
+ * @author Gabriel Stackhouse
+ *
+ */
+public class GameServer implements Closeable {
+
+	public static final int DEFAULT_PORT = 7070;
+
+	//Requests
+	public static final int NEW_GAME = 1;
+	public static final int PLACE = 2;
+	public static final int SWAP = 3;
+	public static final int PASS = 4;
+
+	//Replies
+	public static final int STATE = 0x81;
+	public static final int ERROR = 0x82;
+
+	//Error codes
+	public static final int BUSY = 1;
+	public static final int ILLEGAL = 2;
+	public static final int NO_GAME = 3;
+	public static final int BAD_REQUEST = 4;
+
+	/** State flag: the game is over */
+	public static final int GAME_OVER = 1;
+
+	/** Longest message, in bytes */
+	public static final int MAX_MESSAGE = 128;
+
+	//Requests waiting for a worker before the server is too busy
+	private static final int QUEUE = 4096;
+
+	//Seconds between printed reports
+	private static final int REPORT_SECONDS = 5;
+
+	private final Selector selector;
+	private final ServerSocketChannel server;
+	private final ThreadPoolExecutor workers;
+	private final ThreadLocal<AiPlayer[]> ais =
+			ThreadLocal.withInitial(() -> new AiPlayer[AiPlayer.MASTER + 1]);
+
+	//Sessions with replies for the selector thread to send
+	private final ConcurrentLinkedQueue<Session> ready = new ConcurrentLinkedQueue<Session>();
+	private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+	private final AtomicInteger activeGames = new AtomicInteger();
+	private final AtomicInteger peakGames = new AtomicInteger();
+	private final AtomicLong turns = new AtomicLong();
+	private final LatencyHistogram turnLatency = new LatencyHistogram();
+	private volatile boolean running = true;
+
+	/**
+	 * Opens the server socket and starts the workers.  Call run to start serving
+	 * @param port port to listen on, 0 for any free port
+	 * @param threads number of workers playing turns
+	 * @throws IOException if the port can't be opened
+	 */
+	public GameServer(int port, int threads) throws IOException {
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(port), 1024);
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+
+		AtomicInteger count = new AtomicInteger();
+		workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(QUEUE), runnable -> {
+					Thread thread = new Thread(runnable, "GameServer worker " + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		Metrics.start();
+		GameServer server = new GameServer(port, threads);
+		Thread thread = new Thread(server::run, "GameServer");
+		thread.start();
+		System.out.printf("Serving on port %d with %d workers%n", server.getPort(), threads);
+		while (thread.isAlive()) {
+			thread.join(REPORT_SECONDS * 1000);
+			server.printReport();
+		}
+	}
+
+	/**
+	 * Returns the port the server listens on
+	 * @return port number
+	 */
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * Serves connections until the server is closed
+	 */
+	public void run() {
+		while (running) {
+			try {
+				selector.select();
+			}
+			catch (IOException e) {
+				break;
+			}
+
+			Session session;
+			while ((session = ready.poll()) != null)
+				session.flush();
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				if (!key.isValid())
+					continue;
+				if (key.isAcceptable())
+					accept();
+				else {
+					session = (Session) key.attachment();
+					if (key.isReadable())
+						session.read();
+					if (key.isValid() && key.isWritable())
+						session.flush();
+				}
+			}
+		}
+
+		for (Session session : sessions)
+			session.close();
+	}
+
+	/**
+	 * Stops serving and closes every connection
+	 */
+	@Override
+	public void close() throws IOException {
+		running = false;
+		selector.wakeup();
+		workers.shutdown();
+		server.close();
+	}
+
+	public int getSessionCount() {
+		return sessions.size();
+	}
+
+	/**
+	 * Returns the number of games being played
+	 * @return games dealt and not yet over, on open connections
+	 */
+	public int getActiveGames() {
+		return activeGames.get();
+	}
+
+	/**
+	 * Returns the most games that were being played at once
+	 * @return peak of getActiveGames
+	 */
+	public int getPeakGames() {
+		return peakGames.get();
+	}
+
+	/**
+	 * Returns the number of requests played
+	 * @return requests answered by a worker
+	 */
+	public long getTurnCount() {
+		return turns.get();
+	}
+
+	/**
+	 * Returns the latencies of requests played, from being read to the reply being ready,
+	 * which includes the AI's turn and any wait for a worker
+	 * @return histogram of latencies
+	 */
+	public LatencyHistogram getTurnLatency() {
+		return turnLatency;
+	}
+
+	private void printReport() {
+		System.out.printf("%d sessions, %d games (peak %d), %d turns, latency p50 %.1f ms, p99 %.1f ms%n",
+				getSessionCount(), getActiveGames(), getPeakGames(), getTurnCount(),
+				turnLatency.getPercentile(0.5) / 1000.0, turnLatency.getPercentile(0.99) / 1000.0);
+	}
+
+	private void accept() {
+		try {
+			SocketChannel channel;
+			while ((channel = server.accept()) != null) {
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				Session session = new Session(channel);
+				session.key = channel.register(selector, SelectionKey.OP_READ, session);
+				sessions.add(session);
+			}
+		}
+		catch (IOException e) {
+			//The client gave up before it was accepted
+		}
+	}
+
+	/**
+	 * Returns this worker's AI for a level
+	 */
+	private AiPlayer ai(int level) {
+		AiPlayer[] players = ais.get();
+		if (players[level] == null) {
+			players[level] = level == AiPlayer.MASTER
+					? new AiPlayer(new MonteCarloSearch(MonteCarloSearch.DEFAULT_BUDGET, 1)) : new AiPlayer(level);
+		}
+		return players[level];
+	}
+
+	private static ByteBuffer error(int code) {
+		ByteBuffer reply = ByteBuffer.allocate(4);
+		reply.putShort((short) 2).put((byte) ERROR).put((byte) code);
+		reply.flip();
+		return reply;
+	}
+
+	/**
+	 * A connection and its game.  The connection is only used on the selector thread, and
+	 * the game only by the one worker playing the session's request
+	 */
+	private class Session {
+
+		private final SocketChannel channel;
+		private SelectionKey key;
+		private final ByteBuffer in = ByteBuffer.allocate(4 * MAX_MESSAGE);
+		private final ConcurrentLinkedQueue<ByteBuffer> out = new ConcurrentLinkedQueue<ByteBuffer>();
+		private final AtomicBoolean busy = new AtomicBoolean();
+		private final RemotePlayer remote = new RemotePlayer();
+		private GameEngine engine;
+		private int level;
+		private boolean playing;
+		private boolean open = true;
+
+		Session(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Reads what has arrived and hands each whole request to a worker
+		 */
+		void read() {
+			try {
+				if (channel.read(in) < 0) {
+					close();
+					return;
+				}
+			}
+			catch (IOException e) {
+				close();
+				return;
+			}
+
+			in.flip();
+			while (in.remaining() >= 2) {
+				int length = in.getShort(in.position()) & 0xFFFF;
+				if (length == 0 || length > MAX_MESSAGE) {
+					close();
+					return;
+				}
+				if (in.remaining() < 2 + length)
+					break;
+				byte[] message = new byte[length];
+				in.position(in.position() + 2);
+				in.get(message);
+				submit(ByteBuffer.wrap(message));
+			}
+			in.compact();
+		}
+
+		private void submit(ByteBuffer request) {
+			if (!busy.compareAndSet(false, true)) {
+				out.add(error(BUSY));
+				flush();
+				return;
+			}
+
+			long start = System.nanoTime();
+			try {
+				workers.execute(() -> {
+					ByteBuffer reply;
+					try {
+						reply = play(request);
+					}
+					catch (BufferUnderflowException e) {
+						reply = error(BAD_REQUEST);
+					}
+					turns.incrementAndGet();
+					turnLatency.addSince(start);
+
+					//Free the session first, so the client may send again as soon as it has the reply
+					busy.set(false);
+					out.add(reply);
+					ready.add(this);
+					selector.wakeup();
+				});
+			}
+			catch (RejectedExecutionException e) {
+				busy.set(false);
+				out.add(error(BUSY));
+				flush();
+			}
+		}
+
+		/**
+		 * Plays a request and the AI's reply.  Runs on a worker
+		 */
+		private ByteBuffer play(ByteBuffer request) {
+			int type = request.get() & 0xFF;
+			if (type == NEW_GAME) {
+				int newLevel = request.get();
+				long seed = request.getLong();
+				if (newLevel < AiPlayer.EASY || newLevel > AiPlayer.MASTER)
+					return error(BAD_REQUEST);
+				level = newLevel;
+				engine = new GameEngine(remote, ai(level), seed);
+				setPlaying(true);
+				return state(0);
+			}
+			if (engine == null || engine.isGameOver())
+				return error(NO_GAME);
+
+			Hand hand = engine.getHand(0);
+			remote.turn = null;
+			remote.toSwap = null;
+			if (type == PLACE) {
+				int count = request.get();
+				if (count < 1 || count > Turn.MAX_TILES)
+					return error(BAD_REQUEST);
+				Turn turn = new Turn();
+				for (int i = 0; i < count; i++) {
+					int slot = request.get();
+					int x = request.getShort();
+					int y = request.getShort();
+					if (slot < 0 || slot >= hand.getHandLength())
+						return error(ILLEGAL);
+					turn.add(hand.getTileCode(slot), slot, x, y);
+				}
+				if (!GameEngine.isValidTurn(turn, hand, engine.getBoard(), engine.getTilesPlaced()))
+					return error(ILLEGAL);
+				remote.turn = turn;
+			}
+			else if (type == SWAP) {
+				int slots = request.get();
+				boolean[] toSwap = new boolean[hand.getHandLength()];
+				int count = 0;
+				for (int i = 0; i < toSwap.length; i++) {
+					toSwap[i] = (slots & 1 << i) != 0 && hand.getTileCode(i) != TileCode.EMPTY;
+					if (toSwap[i])
+						count++;
+				}
+				if (count == 0 || count > engine.getDeck().getSize())
+					return error(ILLEGAL);
+				remote.toSwap = toSwap;
+			}
+			else if (type != PASS)
+				return error(BAD_REQUEST);
+
+			engine.playTurn();
+			Turn played = engine.getLastTurn();
+			int score = played == null ? 0 : played.getScore();
+			boolean aiMoved = false;
+			if (!engine.isGameOver()) {
+				engine.setPlayer(1, ai(level));
+				engine.playTurn();
+				aiMoved = true;
+			}
+			if (engine.isGameOver())
+				setPlaying(false);
+			return state(score, aiMoved);
+		}
+
+		private ByteBuffer state(int score) {
+			return state(score, false);
+		}
+
+		private ByteBuffer state(int score, boolean aiMoved) {
+			Hand hand = engine.getHand(0);
+			ByteBuffer reply = ByteBuffer.allocate(MAX_MESSAGE);
+			reply.putShort((short) 0);
+			reply.put((byte) STATE);
+			reply.put((byte) (engine.isGameOver() ? GAME_OVER : 0));
+			reply.putShort((short) score);
+			reply.putShort((short) engine.getScore(0));
+			reply.putShort((short) engine.getScore(1));
+			reply.put((byte) engine.getDeck().getSize());
+			reply.put((byte) hand.getHandLength());
+			for (int i = 0; i < hand.getHandLength(); i++)
+				reply.put((byte) hand.getTileCode(i));
+
+			Turn aiTurn = aiMoved ? engine.getLastTurn() : null;
+			reply.put((byte) (aiMoved ? engine.getLastTurnType() : 0));
+			reply.putShort((short) (aiTurn == null ? 0 : aiTurn.getScore()));
+			reply.put((byte) (aiTurn == null ? 0 : aiTurn.size()));
+			for (int i = 0; aiTurn != null && i < aiTurn.size(); i++) {
+				reply.put((byte) aiTurn.getTileCode(i));
+				reply.putShort((short) aiTurn.getX(i));
+				reply.putShort((short) aiTurn.getY(i));
+			}
+			reply.putShort(0, (short) (reply.position() - 2));
+			reply.flip();
+			return reply;
+		}
+
+		/**
+		 * Counts the session's game in or out of the games in progress
+		 */
+		private synchronized void setPlaying(boolean playing) {
+			playing &= open;
+			if (playing == this.playing)
+				return;
+			this.playing = playing;
+			if (playing) {
+				int games = activeGames.incrementAndGet();
+				peakGames.accumulateAndGet(games, Math::max);
+			}
+			else
+				activeGames.decrementAndGet();
+		}
+
+		/**
+		 * Writes waiting replies, and waits for the socket to take the rest
+		 */
+		void flush() {
+			if (!channel.isOpen())
+				return;
+			try {
+				ByteBuffer reply;
+				while ((reply = out.peek()) != null) {
+					channel.write(reply);
+					if (reply.hasRemaining()) {
+						key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+						return;
+					}
+					out.poll();
+				}
+				key.interestOps(SelectionKey.OP_READ);
+			}
+			catch (IOException e) {
+				close();
+			}
+		}
+
+		void close() {
+			synchronized (this) {
+				setPlaying(false);
+				open = false;
+			}
+			sessions.remove(this);
+			key.cancel();
+			try {
+				channel.close();
+			}
+			catch (IOException e) {
+				//Already gone
+			}
+		}
+	}
+
+	/**
+	 * Plays the turn the client sent
+	 */
+	private static class RemotePlayer implements Player {
+
+		private Turn turn;
+		private boolean[] toSwap;
+
+		@Override
+		public Turn chooseTurn(GameEngine game, Hand hand) {
+			return turn;
+		}
+
+		@Override
+		public boolean[] chooseSwap(GameEngine game, Hand hand) {
+			return toSwap;
+		}
+	}
+}
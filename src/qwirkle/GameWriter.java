@@ -0,0 +1,61 @@
+package qwirkle;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends recorded games to a game record file.  The file is only ever added to, so a
+ * corpus can grow over many tournament runs and be read by GameReader while it grows.
+ * Several threads can share a writer; each write goes into the file whole.
+ * @author Gabriel Stackhouse
+ *
+ */
+public class GameWriter implements Closeable {
+
+	private final FileChannel channel;
+	private long gamesWritten;
+
+	/**
+	 * Opens a file for appending, creating it if needed
+	 * @param path game record file
+	 * @throws IOException if the file can't be opened
+	 */
+	public GameWriter(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Writes a recorder's finished games and clears them from it
+	 * @param recorder recorder holding the games
+	 * @throws IOException if the write fails
+	 */
+	public void write(GameRecorder recorder) throws IOException {
+		ByteBuffer games = recorder.getFinished();
+		int count = 0;
+		for (int at = 0; at < games.limit(); at += new GameRecord(games, at).getSize())
+			count++;
+		synchronized (this) {
+			while (games.hasRemaining())
+				channel.write(games);
+			gamesWritten += count;
+		}
+		recorder.clear();
+	}
+
+	/**
+	 * Returns the number of games this writer has written
+	 * @return number of games
+	 */
+	public synchronized long getGamesWritten() {
+		return gamesWritten;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -1,11 +1,25 @@
 package qwirkle;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class Hand {
 
-	private Tile[] hand = new Tile[6];
+	//Tile codes (see TileCode), TileCode.EMPTY for an empty slot
+	private int[] hand = new int[6];
 	private int score;
 	private int handSize;
+	private long hashKey = 0; //sum of Zobrist.hand of each tile
+	
+	private TurnGenerator turnGenerator = new TurnGenerator();
+
+	//Undo stack for makeTurn: the slot and code of each tile played, then the number of tiles
+	//and the score of each turn
+	private int[] undoSlot = new int[Turn.MAX_TILES * 8];
+	private int[] undoCode = new int[Turn.MAX_TILES * 8];
+	private int undoSize = 0;
+	private int[] turnSize = new int[8];
+	private int[] turnScore = new int[8];
+	private int turnDepth = 0;
 	
 	/**
 	 * Constructs hand of default 6 tiles
@@ -13,12 +27,31 @@ public class Hand {
 	 */
 	public Hand(Deck deck) {
 		for (int i = 0; i < hand.length; i++) {
-			hand[i] = deck.removeTile();
+			setSlot(i, deck.removeTileCode());
 		}
 		score = 0;
 		handSize = hand.length;
 	}
 	
+	/**
+	 * Constructs an empty hand, to be filled with addTileCode
+	 */
+	public Hand() {
+		score = 0;
+		handSize = 0;
+	}
+	
+	/**
+	 * Constructs a copy of a hand, so an AI can search without changing the original
+	 * @param other hand to copy
+	 */
+	public Hand(Hand other) {
+		System.arraycopy(other.hand, 0, hand, 0, hand.length);
+		score = other.score;
+		handSize = other.handSize;
+		hashKey = other.hashKey;
+	}
+	
 	/**
 	 * Adds a tile from the deck
 	 * @param deck the deck the tile is added from
@@ -29,8 +62,8 @@ public class Hand {
 			return false;
 		
 		for (int i = 0; i < hand.length; i++) {
-			if (hand[i] == null) {
-				hand[i] = deck.removeTile();
+			if (hand[i] == TileCode.EMPTY) {
+				setSlot(i, deck.removeTileCode());
 				handSize++;
 				return true;
 			}
@@ -48,12 +81,85 @@ public class Hand {
 	 */
 	public boolean addTileFromBoard(Board board, int x, int y) {
 		int index = findEmptySlot();
-		if (handSize == hand.length || index == -1 || board.getTile(x, y) == null)
+		if (handSize == hand.length || index == -1 || board.getTileCode(x, y) == TileCode.EMPTY)
 			return false;
-		hand[index] = board.removeTile(x, y);
+		setSlot(index, board.removeTileCode(x, y));
+		handSize++;
 		return true;
 	}
 	
+	/**
+	 * Puts a tile in an empty slot of the hand
+	 * @param index index of slot
+	 * @param code code of tile
+	 * @return true if successful, false if the slot is taken
+	 */
+	public boolean addTileCode(int index, int code) {
+		if (index < 0 || index >= hand.length || hand[index] != TileCode.EMPTY || code == TileCode.EMPTY)
+			return false;
+		setSlot(index, code);
+		handSize++;
+		return true;
+	}
+
+	/**
+	 * Plays a turn so that it can be taken back with unmakeTurn.  The tiles leave their
+	 * slots, are placed with Board.makeMove and the turn is scored and added to the score.
+	 * The turn isn't checked, and the hand isn't refilled.  Nothing is allocated once the
+	 * stacks have grown to the deepest search
+	 * @param turn turn to play, with the hand index of each tile
+	 * @param board game board
+	 * @return score of the turn
+	 */
+	public int makeTurn(Turn turn, Board board) {
+		if (turnDepth == turnSize.length) {
+			turnSize = Arrays.copyOf(turnSize, turnDepth * 2);
+			turnScore = Arrays.copyOf(turnScore, turnDepth * 2);
+		}
+		if (undoSize + turn.size() > undoSlot.length) {
+			undoSlot = Arrays.copyOf(undoSlot, undoSlot.length * 2);
+			undoCode = Arrays.copyOf(undoCode, undoCode.length * 2);
+		}
+
+		for (int i = 0; i < turn.size(); i++) {
+			int slot = turn.getIndex(i);
+			undoSlot[undoSize] = slot;
+			undoCode[undoSize] = hand[slot];
+			undoSize++;
+			if (hand[slot] != TileCode.EMPTY)
+				handSize--;
+			setSlot(slot, TileCode.EMPTY);
+			board.makeMove(turn.getTileCode(i), turn.getX(i), turn.getY(i));
+		}
+
+		int turnPoints = TurnGenerator.scoreTurn(board, turn);
+		score += turnPoints;
+		turnSize[turnDepth] = turn.size();
+		turnScore[turnDepth] = turnPoints;
+		turnDepth++;
+		return turnPoints;
+	}
+
+	/**
+	 * Takes back the last turn played with makeTurn: the board, the hand slots and the
+	 * score are as they were before it
+	 * @param board game board the turn was played on
+	 */
+	public void unmakeTurn(Board board) {
+		if (turnDepth == 0)
+			return;
+		turnDepth--;
+		score -= turnScore[turnDepth];
+		for (int i = 0; i < turnSize[turnDepth]; i++) {
+			board.unmakeMove();
+			undoSize--;
+			int slot = undoSlot[undoSize];
+			setSlot(slot, undoCode[undoSize]);
+			if (hand[slot] != TileCode.EMPTY)
+				handSize++;
+		}
+	}
+
 	/**
 	 * Fills hand with tiles from deck until either hand is full or deck is empty
 	 * @param deck
@@ -62,8 +168,8 @@ public class Hand {
 		for (int i = 0; i < hand.length; i++) {
 			if (deck.isEmpty())
 				return;
-			else if (hand[i] == null) {
-				hand[i] = deck.removeTile();
+			else if (hand[i] == TileCode.EMPTY) {
+				setSlot(i, deck.removeTileCode());
 				handSize++;
 			}
 		}
@@ -75,7 +181,7 @@ public class Hand {
 	 */
 	public int findEmptySlot() {
 		for (int i = 0; i < hand.length; i++) {
-			if (hand[i] == null)
+			if (hand[i] == TileCode.EMPTY)
 				return i;
 		}
 		return -1;
@@ -87,9 +193,9 @@ public class Hand {
 	 * @param index index of the tile (must be between 0 and hand.size() - 1
 	 */
 	public void putTileInDeck(Deck deck, int index) {
-		if (handSize > 0 && index >= 0 && index < hand.length && hand[index] != null) {
-			deck.addTile(hand[index]);
-			hand[index] = null;
+		if (handSize > 0 && index >= 0 && index < hand.length && hand[index] != TileCode.EMPTY) {
+			deck.addTileCode(hand[index]);
+			setSlot(index, TileCode.EMPTY);
 			handSize--;
 		}
 	}
@@ -100,10 +206,19 @@ public class Hand {
 	 * @return tile at index, null if not present
 	 */
 	public Tile getTile(int index) {
-		if (handSize > 0 && index >= 0 && index < hand.length && hand[index] != null) 
+		return Tile.of(getTileCode(index));
+	}
+	
+	/**
+	 * Gets code of tile without removing it
+	 * @param index index of tile
+	 * @return tile code at index, TileCode.EMPTY if not present
+	 */
+	public int getTileCode(int index) {
+		if (index >= 0 && index < hand.length) 
 			return hand[index];
 		else
-			return null;	
+			return TileCode.EMPTY;	
 	}
 
 	
@@ -113,16 +228,49 @@ public class Hand {
 	 * @return tile removed, null if not present
 	 */
 	public Tile removeTile(int index) {
-		if (handSize > 0 && index >= 0 && index < hand.length && hand[index] != null) {
-			Tile tile = hand[index];
-			hand[index] = null;
+		return Tile.of(removeTileCode(index));
+	}
+	
+	/**
+	 * Removes tile at index
+	 * @param index
+	 * @return code of tile removed, TileCode.EMPTY if not present
+	 */
+	public int removeTileCode(int index) {
+		if (handSize > 0 && index >= 0 && index < hand.length && hand[index] != TileCode.EMPTY) {
+			int code = hand[index];
+			setSlot(index, TileCode.EMPTY);
 			handSize--;
-			return tile;
+			return code;
 		}
 		else
-			return null;
+			return TileCode.EMPTY;
 	}
 	
+	/**
+	 * Returns the Zobrist key of the tiles in the hand, whatever slots they are in
+	 * @return hand key
+	 */
+	public long getHashKey() {
+		return hashKey;
+	}
+
+	/**
+	 * Returns the Zobrist key of a position as seen by this hand's player: the board, this
+	 * hand and the side to move.  Used to look up positions in a TranspositionTable
+	 * @param board game board
+	 * @param player player to move, 0 or 1
+	 * @return position key
+	 */
+	public long getPositionKey(Board board, int player) {
+		return board.getHashKey() ^ hashKey ^ (player == 1 ? Zobrist.SIDE : 0);
+	}
+
+	private void setSlot(int index, int code) {
+		hashKey += Zobrist.hand(code) - Zobrist.hand(hand[index]);
+		hand[index] = code;
+	}
+
 	public int getHandSize() {
 		return handSize;
 	}
@@ -139,8 +287,17 @@ public class Hand {
 		return handSize == hand.length;
 	}
 	
-	public Tile[] getHand() {
-		return hand;
+	/**
+	 * Returns a bit mask of the kinds of tile in the hand (see TileCode.bit)
+	 * @return bit mask
+	 */
+	public long getKindMask() {
+		long mask = 0;
+		for (int i = 0; i < hand.length; i++) {
+			if (hand[i] != TileCode.EMPTY)
+				mask |= TileCode.bit(hand[i]);
+		}
+		return mask;
 	}
 	
 	public int getScore() {
@@ -164,108 +321,30 @@ public class Hand {
 	 * @return true if move is valid, false otherwise
 	 */
 	public boolean isValidMove(int x, int y, Tile tile, Board board, int tilesPlaced) {
-		
-		if (tile == null || x < 1 || x >= board.getXMax() - 1 || y < 1 || y >= board.getYMax() - 1 || board.getTile(x, y) != null)
-			return false;
-		
-		//0 = nothing, 1 = color, 2 = symbol
-		int xAxis = 0;
-		int yAxis = 0;
-		
-		//X-axis
-		if ((board.getTile(x-1, y) != null && board.getTile(x-1, y).getColor() == tile.getColor()) ||
-			(board.getTile(x+1, y) != null && board.getTile(x+1, y).getColor() == tile.getColor()))
-			xAxis = 1;
-		else if ((board.getTile(x-1, y) != null && board.getTile(x-1, y).getSymbol() == tile.getSymbol()) ||
-				 (board.getTile(x+1, y) != null && board.getTile(x+1, y).getSymbol() == tile.getSymbol()))
-			xAxis = 2;
-		
-		//Y-axis
-		if ((board.getTile(x, y-1) != null && board.getTile(x, y-1).getColor() == tile.getColor()) ||
-			(board.getTile(x, y+1) != null && board.getTile(x, y+1).getColor() == tile.getColor()))
-			yAxis = 1;
-		else if ((board.getTile(x, y-1) != null && board.getTile(x, y-1).getSymbol() == tile.getSymbol()) ||
-				 (board.getTile(x, y+1) != null && board.getTile(x, y+1).getSymbol() == tile.getSymbol()))
-			yAxis = 2;
-		
-		//If tile is placed on its own, move invalid (unless first move)
-		if (xAxis == 0 && yAxis == 0 && tilesPlaced > 0)
-			return false;
-		else if (xAxis == 0 && yAxis == 0 && tilesPlaced == 0)
-			return true;
-		
-		
-		//Check Right
-		int i;
-		for (i = 1; i <= hand.length; i++) {
-			
-			if (x + i >= board.getXMax() - 1 || (xAxis == 0 && board.getTile(x+i, y) == null) || board.getTile(x + i, y) == null)
-				break;
-			
-			if (checkForMatch(x + i, y, xAxis, tile, board) == false)
-				return false;
-		}
-		
-		
-		//Check Left
-		for (i = 1; i <= hand.length; i++) {
-			
-			if (x - i < 1 || (xAxis == 0 && board.getTile(x-i, y) == null) || board.getTile(x - i, y) == null)
-				break;
-	
-			if (checkForMatch(x - i, y, xAxis, tile, board) == false)
-				return false;
-		}
-			
-		
-		//Check Up
-		for (i = 1; i <= hand.length; i++) {
-			
-			if (y - i < 1 || (yAxis == 0 && board.getTile(x, y-i) == null) || board.getTile(x, y - i) == null)
-				break;
-			
-			if (checkForMatch(x, y - i, yAxis, tile, board) == false)
-				return false;
-		}
-		
-		
-		//Check Down
-		for (i = 1; i <= hand.length; i++) {
-			
-			if (y + i >= board.getYMax() - 1 || (yAxis == 0 && board.getTile(x, y+i) == null) || board.getTile(x, y + i) == null)
-				break;
-			
-			if (checkForMatch(x, y + i, yAxis, tile, board) == false)
-				return false;
-		}
-		
-		//At this point, move must be valid
-		return true;
+		return isValidMove(x, y, Tile.codeOf(tile), board, tilesPlaced);
 	}
 	
-	private boolean checkForMatch(int x, int y, int colorOrSymbol, Tile tile, Board board) {
-		
+	/**
+	 * Checks if a move is valid, given a tile code and a location
+	 * @param x x-axis
+	 * @param y y-axis
+	 * @param code code of tile to be placed
+	 * @param board game board
+	 * @return true if move is valid, false otherwise
+	 */
+	public boolean isValidMove(int x, int y, int code, Board board, int tilesPlaced) {
+		if (Metrics.ENABLED)
+			Metrics.VALID_MOVE_CHECKS.increment();
 		
-		if (colorOrSymbol == 0)
+		if (code == TileCode.EMPTY || board.getTileCode(x, y) != TileCode.EMPTY)
 			return false;
-		else if (colorOrSymbol == 1) {
-			
-			if (board.getTile(x, y).getColor()  == tile.getColor() && 
-				board.getTile(x, y).getSymbol() != tile.getSymbol())
-				return true;
-			else
-				return false;
-			
-		}
-		else {
-			
-			if (board.getTile(x, y).getSymbol() == tile.getSymbol() &&
-				board.getTile(x, y).getColor()  != tile.getColor()) 
-				return true;
-			else
-				return false;
-		}
 		
+		//Cells next to a tile keep a mask of the tiles that fit their row and column
+		if (board.isFrontier(x, y))
+			return (board.getLegalMask(x, y) & TileCode.bit(code)) != 0;
+		
+		//If tile is placed on its own, move invalid (unless first move, which starts at the origin)
+		return tilesPlaced == 0 && x == 0 && y == 0;
 	}
 	
 	/**
@@ -277,23 +356,76 @@ public class Hand {
 	 * @return ArrayList of moves
 	 */
 	public ArrayList<Move> findMoves(int startIndex, int endIndex, Board board, int tilesPlaced) {
-		ArrayList<Move> moves = new ArrayList<Move>();
+		MoveList found = new MoveList();
+		findMoves(startIndex, endIndex, board, tilesPlaced, found);
+		
+		ArrayList<Move> moves = new ArrayList<Move>(found.size());
+		for (int i = 0; i < found.size(); i++)
+			moves.add(found.toMove(i, this));
+		return moves;
+	}
+	
+	/**
+	 * Finds all move possibilities without allocating, for code that runs often
+	 * @param startIndex index of hand to start checking
+	 * @param endIndex   index of hand to stop checking
+	 * @param board game board
+	 * @param tilesPlaced number of tiles placed
+	 * @param moves list to fill, cleared first
+	 * @return number of moves
+	 */
+	public int findMoves(int startIndex, int endIndex, Board board, int tilesPlaced, MoveList moves) {
+		Tracing.FindMoves event = Tracing.INSTANCE.beginFindMoves();
+		moves.clear();
 		
+		//Only tiles in the chosen part of the hand can be played
+		long handMask = 0;
 		for (int i = startIndex; i < endIndex + 1; i++) {
+			if (getTileCode(i) != TileCode.EMPTY)
+				handMask |= TileCode.bit(hand[i]);
+		}
+		
+		int candidates = getCandidateCount(board);
+		if (Metrics.ENABLED) {
+			Metrics.FIND_MOVES_CALLS.increment();
+			Metrics.CANDIDATES.add(candidates);
+		}
+		for (int c = 0; c < candidates; c++) {
+			long legal = getCandidateMask(board, c, tilesPlaced) & handMask;
+			if (legal == 0)
+				continue;
 			
-			for (int y = 1; y < board.getYMax() - 1; y++) {
-				for (int x = 1; x < board.getXMax() - 1; x++) {
-					
-					if (isValidMove(x, y, this.getTile(i), board, tilesPlaced)) {
-						int moveScore = getMoveScore(x, y, board);
-						Move move = new Move(this.getTile(i), i, x, y, moveScore);
-						moves.add(move);
-					}
-				}
+			int x = getCandidateX(board, c);
+			int y = getCandidateY(board, c);
+			int moveScore = getMoveScore(x, y, board);
+			for (int i = startIndex; i < endIndex + 1; i++) {
+				if (hand[i] != TileCode.EMPTY && (legal & TileCode.bit(hand[i])) != 0)
+					moves.add(i, x, y, moveScore);
 			}
 		}
 		
-		return moves;
+		if (event != null)
+			event.record(candidates, moves.size(), tilesPlaced);
+		return moves.size();
+	}
+	
+	/**
+	 * Returns the number of turns the last aiHard looked at
+	 * @return number of turns
+	 */
+	public int getTurnsGenerated() {
+		return turnGenerator.getGenerated();
+	}
+	
+	/**
+	 * Returns an ArrayList of all full turns: 1 to 6 tiles from the hand placed in a single
+	 * row or column
+	 * @param board game board
+	 * @param tilesPlaced number of tiles placed
+	 * @return ArrayList of turns, each with its score
+	 */
+	public ArrayList<Turn> findTurns(Board board, int tilesPlaced) {
+		return turnGenerator.findTurns(this, board, tilesPlaced);
 	}
 	
 	/**
@@ -307,40 +439,14 @@ public class Hand {
 	public int getMoveScore(int x, int y, Board board) {
 		int score = 0;
 		
-		//Check Left
-		int i;
-		int line = 0;
-		for (i = 1; i < 6; i++) {
-			if (x - i < 0 || board.getTile(x-i, y) == null)
-				break;
-			line++;
-		}
-		
-		//Check Right
-		for (i = 1; i < 6; i++) {
-			if (x + i >= board.getXMax() || board.getTile(x+i, y) == null)
-				break;
-			line++;
-		}
+		//Tiles touching the cell in each direction, at most five each way
+		int line = Math.min(board.getRunBefore(x, y, 1, 0), 5) + Math.min(board.getRunAfter(x, y, 1, 0), 5);
 		score += calculateLine(line);
 		
-		//Check Up
-		line = 0;
-		for (i = 1; i < 6; i++) {
-			if (y - i < 0 || board.getTile(x, y-i) == null)
-				break;
-			line++;
-		}
-		
-		//Check Down
-		for (i = 1; i < 6; i++) {
-			if (y + i >= board.getYMax() || board.getTile(x, y+i) == null)
-				break;
-			line++;
-		}
+		line = Math.min(board.getRunBefore(x, y, 0, 1), 5) + Math.min(board.getRunAfter(x, y, 0, 1), 5);
 		score += calculateLine(line);
 		
-		//TODO --take multiple tiles per move into account
+		//Multiple tiles per turn are scored by TurnGenerator.scoreTurn
 		
 		if (score == 0)
 			score += 1;
@@ -348,6 +454,43 @@ public class Hand {
 		return score;
 	}
 	
+	/**
+	 * Returns the number of cells a move could be placed in.  These are the frontier
+	 * cells of the board, or just the origin (0, 0) if no tiles have been placed
+	 * @param board game board
+	 * @return number of candidate cells
+	 */
+	private int getCandidateCount(Board board) {
+		if (board.getFrontierSize() == 0)
+			return 1;
+		return board.getFrontierSize();
+	}
+	
+	/**
+	 * Returns the mask of tile kinds that may be placed in a candidate cell
+	 * @param board game board
+	 * @param index index of candidate cell
+	 * @param tilesPlaced number of tiles placed
+	 * @return bit mask of tile kinds
+	 */
+	private long getCandidateMask(Board board, int index, int tilesPlaced) {
+		if (board.getFrontierSize() == 0)
+			return tilesPlaced == 0 ? TileCode.ALL_KINDS : 0;
+		return board.getFrontierMask(index);
+	}
+	
+	private int getCandidateX(Board board, int index) {
+		if (board.getFrontierSize() == 0)
+			return 0;
+		return board.getFrontierX(index);
+	}
+	
+	private int getCandidateY(Board board, int index) {
+		if (board.getFrontierSize() == 0)
+			return 0;
+		return board.getFrontierY(index);
+	}
+	
 	private int calculateLine(int line) {
 		int lineScore = line;
 		
@@ -370,14 +513,18 @@ public class Hand {
 	 */
 	public Move aiEasy(Board board, int tilesPlaced) {
 		
+		int candidates = getCandidateCount(board);
 		for (int i = 0; i < hand.length; i++) {
-			for (int y = 1; y < board.getYMax() - 1; y++) {
-				for (int x = 1; x < board.getXMax() - 1; x++) {
-					if (this.isValidMove(x, y, hand[i], board, tilesPlaced)) {
-						int moveScore = getMoveScore(x, y, board);
-						Move move = new Move(hand[i], i, x, y, moveScore);
-						return move;
-					}	
+			if (hand[i] == TileCode.EMPTY)
+				continue;
+			long bit = TileCode.bit(hand[i]);
+			for (int c = 0; c < candidates; c++) {
+				if ((getCandidateMask(board, c, tilesPlaced) & bit) != 0) {
+					int x = getCandidateX(board, c);
+					int y = getCandidateY(board, c);
+					int moveScore = getMoveScore(x, y, board);
+					Move move = new Move(Tile.of(hand[i]), i, x, y, moveScore);
+					return move;
 				}
 			}
 		}
@@ -395,15 +542,19 @@ public class Hand {
 		int count = 0;
 		int choices = 3;
 		Move[] moves = new Move[3];
+		int candidates = getCandidateCount(board);
 		for (int i = 0; i < hand.length && count < choices; i++) {
-			for (int y = 1; y < board.getYMax() - 1 && count < choices; y++) {
-				for (int x = 1; x < board.getXMax() - 1 && count < choices; x++) {
-					if (this.isValidMove(x, y, hand[i], board, tilesPlaced)) {
-						int moveScore = getMoveScore(x, y, board);
-						Move move = new Move(hand[i], i, x, y, moveScore);
-						moves[count] = move;
-						count++;
-					}	
+			if (hand[i] == TileCode.EMPTY)
+				continue;
+			long bit = TileCode.bit(hand[i]);
+			for (int c = 0; c < candidates && count < choices; c++) {
+				if ((getCandidateMask(board, c, tilesPlaced) & bit) != 0) {
+					int x = getCandidateX(board, c);
+					int y = getCandidateY(board, c);
+					int moveScore = getMoveScore(x, y, board);
+					Move move = new Move(Tile.of(hand[i]), i, x, y, moveScore);
+					moves[count] = move;
+					count++;
 				}
 			}
 		}
@@ -418,22 +569,54 @@ public class Hand {
 	}
 	
 	/**
-	 * Finds all possible moves and chooses the best of them
+	 * Finds all possible turns, placing as many tiles as it can, and chooses the best of them
 	 * @param board the game board
 	 * @param tilesPlaced number of tiles placed
-	 * @return best possible move, null if none possible
+	 * @return best possible turn, null if none possible
 	 */
-	public Move aiHard(Board board, int tilesPlaced) {
-		
-		ArrayList<Move> moves = findMoves(0, 5, board, tilesPlaced);
-		
-		Move bestMove = moves.get(0);
-		for (int i = 1; i < moves.size(); i++) {
-			if (moves.get(i).getScore() > bestMove.getScore())
-				bestMove = moves.get(i);
-		}
-		
-		return bestMove;
+	public Turn aiHard(Board board, int tilesPlaced) {
+		return turnGenerator.findBestTurn(this, board, tilesPlaced);
+	}
+
+	/**
+	 * AI that looks ahead at its next turns and the tiles it may draw (see ExpectimaxSearch)
+	 * @param board game board
+	 * @param tilesPlaced number of tiles placed
+	 * @param deckSize number of tiles left in the deck
+	 * @param search search to use, which holds the depth, time budget and transposition table
+	 * @return best turn found, null if no tile can be placed
+	 */
+	public Turn aiExpectimax(Board board, int tilesPlaced, int deckSize, ExpectimaxSearch search) {
+		return search.findBestTurn(this, board, tilesPlaced, deckSize);
+	}
+
+	/**
+	 * AI that looks ahead one more turn at a time until a deadline or node budget runs out,
+	 * always keeping the best turn so far (see ExpectimaxSearch).  The search's
+	 * getDepthReached and getNodesPerSecond tell how far it got
+	 * @param board game board
+	 * @param tilesPlaced number of tiles placed
+	 * @param deckSize number of tiles left in the deck
+	 * @param deadline System.nanoTime() to answer by
+	 * @param maxNodes number of positions to search, 0 for no limit
+	 * @param search search to use, which holds the deepest depth and transposition table
+	 * @return best turn found, null if no tile can be placed
+	 */
+	public Turn aiExpectimax(Board board, int tilesPlaced, int deckSize, long deadline, long maxNodes, ExpectimaxSearch search) {
+		return search.findBestTurn(this, board, tilesPlaced, deckSize, deadline, maxNodes);
+	}
+
+	/**
+	 * AI that plays out games from each of its turns on every core (see MonteCarloSearch)
+	 * @param board game board
+	 * @param tilesPlaced number of tiles placed
+	 * @param deckSize number of tiles left in the deck
+	 * @param opponentTiles number of tiles in the opponent's hand
+	 * @param search search to use, which holds the time budget and threads
+	 * @return best turn found, null if no tile can be placed
+	 */
+	public Turn aiMonteCarlo(Board board, int tilesPlaced, int deckSize, int opponentTiles, MonteCarloSearch search) {
+		return search.findBestTurn(this, board, tilesPlaced, deckSize, opponentTiles);
 	}
 	
 }
@@ -0,0 +1,131 @@
+package qwirkle;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in buckets that grow with the latency, so percentiles can be read at any
+ * time while many threads keep adding to it.
+ * <p>
+ * Latencies are counted in microseconds.  Below 16 every microsecond has its own bucket;
+ * above that each power of two is split into 16 buckets, so a percentile is never more than
+ * about 6% above the real one.  Adding is one atomic increment, and nothing is allocated.
+ * A histogram that many threads add to often can be split into stripes, each thread adding
+ * to the stripe picked by its id, so threads rarely increment the same count.
+ * @author Gabriel Stackhouse
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	//Enough buckets for any long
+	private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts;
+	private final int stripeMask;
+
+	/**
+	 * Constructs a histogram with one stripe
+	 */
+	public LatencyHistogram() {
+		this(1);
+	}
+
+	/**
+	 * @param stripes number of stripes, rounded up to a power of two
+	 */
+	public LatencyHistogram(int stripes) {
+		int size = 1;
+		while (size < stripes)
+			size <<= 1;
+		stripeMask = size - 1;
+		counts = new AtomicLongArray(size * BUCKETS);
+	}
+
+	/**
+	 * Counts a latency
+	 * @param nanos latency in nanoseconds
+	 */
+	public void add(long nanos) {
+		int stripe = (int) Thread.currentThread().getId() & stripeMask;
+		counts.incrementAndGet(stripe * BUCKETS + bucket(Math.max(nanos / 1000, 0)));
+	}
+
+	/**
+	 * Counts a latency since a start time
+	 * @param start System.nanoTime at the start
+	 */
+	public void addSince(long start) {
+		add(System.nanoTime() - start);
+	}
+
+	/**
+	 * Returns the number of latencies counted
+	 * @return count
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < counts.length(); i++)
+			count += counts.get(i);
+		return count;
+	}
+
+	/**
+	 * Returns the latency that a fraction of the latencies were at or below
+	 * @param fraction between 0 and 1, 0.99 for the 99th percentile
+	 * @return latency in microseconds, the top of its bucket, 0 if nothing was counted
+	 */
+	public long getPercentile(double fraction) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			long count = counts.get(i);
+			snapshot[i % BUCKETS] += count;
+			total += count;
+		}
+		if (total == 0)
+			return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(fraction * total));
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += snapshot[i];
+			if (count >= rank)
+				return highest(i);
+		}
+		return highest(BUCKETS - 1);
+	}
+
+	/**
+	 * Adds the counts of another histogram to these
+	 * @param other histogram to add
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < other.counts.length(); i++)
+			counts.addAndGet(i % counts.length(), other.counts.get(i));
+	}
+
+	/**
+	 * Forgets everything counted.  Latencies added at the same time may or may not be kept
+	 */
+	public void clear() {
+		for (int i = 0; i < counts.length(); i++)
+			counts.set(i, 0);
+	}
+
+	private static int bucket(long micros) {
+		if (micros < SUB_BUCKETS)
+			return (int) micros;
+		int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) - SUB_BUCKETS);
+	}
+
+	//Largest latency in a bucket, in microseconds
+	private static long highest(int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		int shift = bucket / SUB_BUCKETS - 1;
+		long low = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return low + (1L << shift) - 1;
+	}
+}
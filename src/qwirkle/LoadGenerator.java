@@ -0,0 +1,331 @@
+package qwirkle;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * Plays many games against a GameServer at once, to measure how it holds up under load.
+ * <p>
+ * Every client is a connection on one non-blocking Selector, which plays its games back to
+ * back at a chosen AI level.  A client keeps its own copy of the board from the turns it
+ * sees, and plays the first tile it finds that fits, or swaps or passes when none does, so
+ * the clients cost little next to the server's AI.  The time from each request to its
+ * reply is counted in a LatencyHistogram.
+ * <p>
+ * Without a host, a GameServer is started in the same process on a free loopback port, and
+ * its own counts are reported as well.
+ * <p>
+ * Usage: LoadGenerator clients games level [host port], where games is the number each
+ * client plays
+ * @author Gabriel Stackhouse
+ *
+ */
+public class LoadGenerator {
+
+	private final Selector selector;
+	private final int games;
+	private final int level;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private int running;
+	private long gamesPlayed;
+	private long errors;
+
+	/**
+	 * Opens the connections
+	 * @param address server to connect to
+	 * @param clients number of connections
+	 * @param games games each client plays
+	 * @param level AI level to play against
+	 * @throws IOException if a connection can't be opened
+	 */
+	public LoadGenerator(InetSocketAddress address, int clients, int games, int level) throws IOException {
+		this.games = games;
+		this.level = level;
+		selector = Selector.open();
+		for (int i = 0; i < clients; i++) {
+			SocketChannel channel = SocketChannel.open();
+			channel.configureBlocking(false);
+			channel.connect(address);
+			channel.register(selector, SelectionKey.OP_CONNECT, new Client(channel, i));
+		}
+		running = clients;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.out.println("Usage: LoadGenerator clients games level [host port]");
+			return;
+		}
+
+		int clients = Integer.parseInt(args[0]);
+		int games = Integer.parseInt(args[1]);
+		int level = Integer.parseInt(args[2]);
+		GameServer server = null;
+		InetSocketAddress address;
+		if (args.length > 4)
+			address = new InetSocketAddress(args[3], Integer.parseInt(args[4]));
+		else {
+			server = new GameServer(0, Runtime.getRuntime().availableProcessors());
+			new Thread(server::run, "GameServer").start();
+			address = new InetSocketAddress("127.0.0.1", server.getPort());
+		}
+
+		LoadGenerator load = new LoadGenerator(address, clients, games, level);
+		long start = System.nanoTime();
+		load.run();
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		LatencyHistogram latency = load.getLatency();
+		System.out.printf("%d clients vs %s, %d games, %d turns in %.2f s%n", clients, new AiPlayer(level),
+				load.getGamesPlayed(), latency.getCount(), seconds);
+		System.out.printf("%.0f turns/sec, latency p50 %.2f ms, p99 %.2f ms, max %.2f ms, %d errors%n",
+				latency.getCount() / seconds, latency.getPercentile(0.5) / 1000.0,
+				latency.getPercentile(0.99) / 1000.0, latency.getPercentile(1) / 1000.0, load.getErrors());
+		if (server != null) {
+			System.out.printf("Server: peak %d games at once, turn latency p99 %.2f ms%n", server.getPeakGames(),
+					server.getTurnLatency().getPercentile(0.99) / 1000.0);
+			server.close();
+		}
+	}
+
+	/**
+	 * Plays until every client has finished its games
+	 * @throws IOException if the selector fails
+	 */
+	public void run() throws IOException {
+		while (running > 0) {
+			selector.select();
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				Client client = (Client) key.attachment();
+				try {
+					if (key.isConnectable()) {
+						client.channel.finishConnect();
+						key.interestOps(SelectionKey.OP_READ);
+						client.newGame();
+					}
+					else if (key.isReadable())
+						client.read();
+				}
+				catch (IOException e) {
+					errors++;
+					client.close();
+				}
+			}
+		}
+		selector.close();
+	}
+
+	/**
+	 * Returns the time from each request to its reply
+	 * @return histogram of latencies
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	public long getGamesPlayed() {
+		return gamesPlayed;
+	}
+
+	/**
+	 * Returns the number of error replies and lost connections
+	 * @return errors
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	/**
+	 * One connection, playing one game at a time
+	 */
+	private class Client {
+
+		private final SocketChannel channel;
+		private final int id;
+		private final ByteBuffer in = ByteBuffer.allocate(4 * GameServer.MAX_MESSAGE);
+		private final ByteBuffer out = ByteBuffer.allocate(GameServer.MAX_MESSAGE);
+		private Board board;
+		private int tilesPlaced;
+		private int[] hand = new int[Turn.MAX_TILES];
+		private int played;
+		private long sent;
+		private boolean open = true;
+
+		//Tile sent in the last PLACE, to put on the board once it is accepted
+		private int placedCode;
+		private int placedX;
+		private int placedY;
+
+		Client(SocketChannel channel, int id) {
+			this.channel = channel;
+			this.id = id;
+		}
+
+		void newGame() throws IOException {
+			board = new Board();
+			tilesPlaced = 0;
+			placedCode = TileCode.EMPTY;
+			begin(GameServer.NEW_GAME);
+			out.put((byte) level);
+			out.putLong(Tournament.gameSeed(id, played));
+			send();
+		}
+
+		void read() throws IOException {
+			if (channel.read(in) < 0) {
+				errors++;
+				close();
+				return;
+			}
+			in.flip();
+			while (open && in.remaining() >= 2) {
+				int length = in.getShort(in.position()) & 0xFFFF;
+				if (in.remaining() < 2 + length)
+					break;
+				int end = in.position() + 2 + length;
+				in.position(in.position() + 2);
+				latency.addSince(sent);
+				reply();
+				in.position(end);
+			}
+			in.compact();
+		}
+
+		private void reply() throws IOException {
+			int type = in.get() & 0xFF;
+			if (type != GameServer.STATE) {
+				errors++;
+				placedCode = TileCode.EMPTY;
+				if (in.get() == GameServer.NO_GAME)
+					newGame();
+				else {
+					begin(GameServer.PASS);
+					send();
+				}
+				return;
+			}
+
+			int flags = in.get();
+			in.getShort(); //our turn's score
+			in.getShort();
+			in.getShort();
+			int deck = in.get();
+			int handLength = in.get();
+			for (int i = 0; i < handLength; i++)
+				hand[i] = in.get() & 0xFF;
+
+			if (placedCode != TileCode.EMPTY) {
+				board.placeTileCode(placedCode, placedX, placedY);
+				tilesPlaced++;
+				placedCode = TileCode.EMPTY;
+			}
+			in.get(); //AI's turn type
+			in.getShort();
+			int count = in.get();
+			for (int i = 0; i < count; i++) {
+				int code = in.get() & 0xFF;
+				int x = in.getShort();
+				int y = in.getShort();
+				board.placeTileCode(code, x, y);
+				tilesPlaced++;
+			}
+
+			if ((flags & GameServer.GAME_OVER) != 0) {
+				gamesPlayed++;
+				if (++played < games)
+					newGame();
+				else
+					close();
+				return;
+			}
+			move(handLength, deck);
+		}
+
+		/**
+		 * Plays the first tile that fits, or swaps or passes
+		 */
+		private void move(int handLength, int deck) throws IOException {
+			for (int slot = 0; slot < handLength; slot++) {
+				int code = hand[slot];
+				if (code == TileCode.EMPTY)
+					continue;
+				if (tilesPlaced == 0) {
+					place(slot, code, 0, 0);
+					return;
+				}
+				for (int f = 0; f < board.getFrontierSize(); f++) {
+					if ((board.getFrontierMask(f) & TileCode.bit(code)) != 0) {
+						place(slot, code, board.getFrontierX(f), board.getFrontierY(f));
+						return;
+					}
+				}
+			}
+
+			int slots = 0;
+			int count = 0;
+			for (int slot = 0; slot < handLength && count < deck; slot++) {
+				if (hand[slot] != TileCode.EMPTY) {
+					slots |= 1 << slot;
+					count++;
+				}
+			}
+			if (count > 0) {
+				begin(GameServer.SWAP);
+				out.put((byte) slots);
+			}
+			else
+				begin(GameServer.PASS);
+			send();
+		}
+
+		private void place(int slot, int code, int x, int y) throws IOException {
+			placedCode = code;
+			placedX = x;
+			placedY = y;
+			begin(GameServer.PLACE);
+			out.put((byte) 1);
+			out.put((byte) slot);
+			out.putShort((short) x);
+			out.putShort((short) y);
+			send();
+		}
+
+		private void begin(int type) {
+			out.clear();
+			out.putShort((short) 0);
+			out.put((byte) type);
+		}
+
+		/**
+		 * Sends the message in out.  Messages are small and one at a time, so the socket
+		 * takes the whole message
+		 */
+		private void send() throws IOException {
+			out.putShort(0, (short) (out.position() - 2));
+			out.flip();
+			sent = System.nanoTime();
+			while (out.hasRemaining())
+				channel.write(out);
+		}
+
+		void close() {
+			if (!open)
+				return;
+			open = false;
+			running--;
+			try {
+				channel.close();
+			}
+			catch (IOException e) {
+				//Already gone
+			}
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package qwirkle;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the engine's hot paths: move checks, move generation,
+ * AI turns per level, deck draws and shuffles, and screen frames.
+ * <p>
+ * Metrics are off unless the JVM is started with -Dqwirkle.metrics=true.  ENABLED is a
+ * constant, so when it is false the JIT removes every "if (Metrics.ENABLED)" and the hot
+ * paths cost the same as without them.  Counters are LongAdders and histograms are striped,
+ * so threads counting at once don't wait on each other.
+ * <p>
+ * start registers the metrics over JMX, as "qwirkle:type=Metrics" (see MetricsMXBean), and
+ * with -Dqwirkle.metrics.dump=N also prints a snapshot to stderr every N seconds.
+ * @author Gabriel Stackhouse
+ *
+ */
+public final class Metrics {
+
+	/** True if metrics are counted */
+	public static final boolean ENABLED = Boolean.getBoolean("qwirkle.metrics");
+
+	public static final String OBJECT_NAME = "qwirkle:type=Metrics";
+
+	private static final int STRIPES = Runtime.getRuntime().availableProcessors();
+
+	public static final LongAdder VALID_MOVE_CHECKS = new LongAdder();
+	public static final LongAdder FIND_MOVES_CALLS = new LongAdder();
+
+	/** Cells looked at by findMoves, whether or not any tile fit them */
+	public static final LongAdder CANDIDATES = new LongAdder();
+
+	public static final LongAdder DECK_DRAWS = new LongAdder();
+	public static final LongAdder DECK_SHUFFLES = new LongAdder();
+
+	private static final LatencyHistogram[] AI_LATENCY = new LatencyHistogram[AiPlayer.MASTER + 1];
+	private static final LatencyHistogram FRAME_LATENCY = new LatencyHistogram();
+
+	private static boolean started;
+
+	static {
+		for (int level = 0; level < AI_LATENCY.length; level++)
+			AI_LATENCY[level] = new LatencyHistogram(STRIPES);
+	}
+
+	private Metrics() {
+	}
+
+	/**
+	 * Counts an AI turn
+	 * @param level AI level (see AiPlayer)
+	 * @param start System.nanoTime when the AI started choosing
+	 */
+	public static void aiTurn(int level, long start) {
+		AI_LATENCY[level].addSince(start);
+	}
+
+	/**
+	 * Counts a frame drawn to the screen
+	 * @param start System.nanoTime when drawing started
+	 */
+	public static void frame(long start) {
+		FRAME_LATENCY.addSince(start);
+	}
+
+	/**
+	 * Registers the metrics over JMX and starts printing snapshots if asked to.  Does nothing
+	 * if metrics are off or already started
+	 */
+	public static synchronized void start() {
+		if (!ENABLED || started)
+			return;
+		started = true;
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+		}
+		catch (JMException e) {
+			System.err.println("Metrics not registered over JMX: " + e);
+		}
+
+		long period = Long.getLong("qwirkle.metrics.dump", 0);
+		if (period > 0) {
+			ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "Metrics");
+				thread.setDaemon(true);
+				return thread;
+			});
+			timer.scheduleAtFixedRate(() -> print(System.err), period, period, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Prints every counter
+	 * @param out stream to print to
+	 */
+	public static void print(PrintStream out) {
+		long calls = FIND_MOVES_CALLS.sum();
+		out.printf("Metrics: isValidMove %d, findMoves %d (%.1f candidates each), deck draws %d, shuffles %d%n",
+				VALID_MOVE_CHECKS.sum(), calls, calls == 0 ? 0 : CANDIDATES.sum() / (double) calls,
+				DECK_DRAWS.sum(), DECK_SHUFFLES.sum());
+		for (int level = 0; level < AI_LATENCY.length; level++) {
+			LatencyHistogram latency = AI_LATENCY[level];
+			long turns = latency.getCount();
+			if (turns > 0) {
+				out.printf("  %-8s %8d turns, p50 %.2f ms, p99 %.2f ms%n", new AiPlayer(level), turns,
+						latency.getPercentile(0.5) / 1000.0, latency.getPercentile(0.99) / 1000.0);
+			}
+		}
+		if (FRAME_LATENCY.getCount() > 0) {
+			out.printf("  Frames   %8d, p50 %.2f ms, p99 %.2f ms%n", FRAME_LATENCY.getCount(),
+					FRAME_LATENCY.getPercentile(0.5) / 1000.0, FRAME_LATENCY.getPercentile(0.99) / 1000.0);
+		}
+	}
+
+	/**
+	 * Sets every counter back to 0
+	 */
+	public static void reset() {
+		VALID_MOVE_CHECKS.reset();
+		FIND_MOVES_CALLS.reset();
+		CANDIDATES.reset();
+		DECK_DRAWS.reset();
+		DECK_SHUFFLES.reset();
+		for (LatencyHistogram latency : AI_LATENCY)
+			latency.clear();
+		FRAME_LATENCY.clear();
+	}
+
+	/**
+	 * The metrics as a JMX bean
+	 */
+	private static class Bean implements MetricsMXBean {
+
+		@Override
+		public boolean isEnabled() {
+			return ENABLED;
+		}
+
+		@Override
+		public long getValidMoveChecks() {
+			return VALID_MOVE_CHECKS.sum();
+		}
+
+		@Override
+		public long getFindMovesCalls() {
+			return FIND_MOVES_CALLS.sum();
+		}
+
+		@Override
+		public long getCandidatesGenerated() {
+			return CANDIDATES.sum();
+		}
+
+		@Override
+		public long getDeckDraws() {
+			return DECK_DRAWS.sum();
+		}
+
+		@Override
+		public long getDeckShuffles() {
+			return DECK_SHUFFLES.sum();
+		}
+
+		@Override
+		public long[] getAiTurns() {
+			long[] turns = new long[AI_LATENCY.length];
+			for (int level = 0; level < turns.length; level++)
+				turns[level] = AI_LATENCY[level].getCount();
+			return turns;
+		}
+
+		@Override
+		public long[] getAiLatencyP50() {
+			return aiPercentile(0.5);
+		}
+
+		@Override
+		public long[] getAiLatencyP99() {
+			return aiPercentile(0.99);
+		}
+
+		private long[] aiPercentile(double fraction) {
+			long[] latency = new long[AI_LATENCY.length];
+			for (int level = 0; level < latency.length; level++)
+				latency[level] = AI_LATENCY[level].getPercentile(fraction);
+			return latency;
+		}
+
+		@Override
+		public long getFrames() {
+			return FRAME_LATENCY.getCount();
+		}
+
+		@Override
+		public long getFrameLatencyP50() {
+			return FRAME_LATENCY.getPercentile(0.5);
+		}
+
+		@Override
+		public long getFrameLatencyP99() {
+			return FRAME_LATENCY.getPercentile(0.99);
+		}
+
+		@Override
+		public void reset() {
+			Metrics.reset();
+		}
+	}
+}
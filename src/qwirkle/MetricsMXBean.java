@@ -0,0 +1,39 @@
+package qwirkle;
+
+/**
+ * The engine's counters, as seen over JMX under the name "qwirkle:type=Metrics".  Latencies
+ * are in microseconds, and the AI latencies have one entry per AI level (see AiPlayer)
+ * @author Gabriel Stackhouse
+ *
+ */
+public interface MetricsMXBean {
+
+	boolean isEnabled();
+
+	long getValidMoveChecks();
+
+	long getFindMovesCalls();
+
+	long getCandidatesGenerated();
+
+	long getDeckDraws();
+
+	long getDeckShuffles();
+
+	long[] getAiTurns();
+
+	long[] getAiLatencyP50();
+
+	long[] getAiLatencyP99();
+
+	long getFrames();
+
+	long getFrameLatencyP50();
+
+	long getFrameLatencyP99();
+
+	/**
+	 * Sets every counter back to 0
+	 */
+	void reset();
+}
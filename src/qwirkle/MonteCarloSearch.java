@@ -0,0 +1,338 @@
+package qwirkle;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The Master AI: a Monte Carlo search that plays out games from each of its possible turns
+ * until a deadline, on every core.
+ * <p>
+ * Every playout is dealt a determinization: the unseen tiles (3 of each kind, less the board
+ * and its own hand) are shuffled into an opponent's hand and a deck order.  A turn is chosen
+ * with UCB1, played, and then both players play Hard's best turn for a few turns, drawing
+ * from the dealt deck.  The reward is the AI's points less the opponent's.  Everything is
+ * played with Board.makeMove and Hand.makeTurn and taken back after, so a playout allocates
+ * almost nothing.
+ * <p>
+ * Each thread searches its own copy of the board with its own statistics (root
+ * parallelism), so threads never wait on each other.  The thread that asks for a turn
+ * searches too, and the others come from one pool shared by every search, so making more
+ * Master AIs never makes more threads.  When time is up the statistics are
+ * added together and the turn played most often wins.  Strength grows with the time budget
+ * and the number of cores.
+ * @author Gabriel Stackhouse
+ *
+ */
+public class MonteCarloSearch {
+
+	public static final long DEFAULT_BUDGET = 500; //milliseconds
+
+	//Turns searched, best immediate score first
+	private static final int ROOT_WIDTH = 24;
+
+	//Turns played out after the searched turn, counting both players
+	static final int PLAYOUT_TURNS = 4;
+
+	//UCB1 exploration, in points
+	private static final double EXPLORATION = 8;
+
+	//Threads shared by every search, so making more searches doesn't make more threads
+	private static ExecutorService pool;
+
+	private final long budget;
+	private final long playoutBudget;
+	private final int threads;
+	private final TurnGenerator turnGenerator = new TurnGenerator();
+	private Worker[] workers;
+
+	private long playouts;
+
+	//System.nanoTime() of the last call to stop
+	private volatile long stopTime = Long.MIN_VALUE;
+
+	/**
+	 * Constructs a search with the default budget on every core
+	 */
+	public MonteCarloSearch() {
+		this(DEFAULT_BUDGET, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param budget time budget per turn in milliseconds
+	 * @param threads number of threads to search on, counting the one calling findBestTurn.
+	 * The others come from a pool shared by every search, with a thread for each core
+	 */
+	public MonteCarloSearch(long budget, int threads) {
+		this(budget, threads, 0);
+	}
+
+	/**
+	 * Constructs a search that can stop after a number of playouts.  On one thread and with
+	 * no time budget it always plays the same turn in the same position, however fast the
+	 * machine
+	 * @param budget time budget per turn in milliseconds, 0 for none
+	 * @param threads number of threads to search on, see above
+	 * @param playoutBudget number of playouts per turn, split between the threads, 0 for no
+	 * limit
+	 */
+	public MonteCarloSearch(long budget, int threads, long playoutBudget) {
+		this.budget = budget;
+		this.threads = Math.max(threads, 1);
+		this.playoutBudget = playoutBudget;
+	}
+
+	/**
+	 * Finds the turn with the best average playout
+	 * @param hand hand to play from, left unchanged
+	 * @param board game board, left unchanged
+	 * @param tilesPlaced number of tiles placed
+	 * @param deckSize number of tiles left in the deck
+	 * @param opponentTiles number of tiles in the opponent's hand
+	 * @return best turn found, null if no tile can be placed
+	 */
+	public Turn findBestTurn(Hand hand, Board board, int tilesPlaced, int deckSize, int opponentTiles) {
+		long start = System.nanoTime();
+		long deadline = budget > 0 ? start + budget * 1000000 : Long.MAX_VALUE;
+		long maxPlayouts = playoutBudget > 0 ? (playoutBudget + threads - 1) / threads : Long.MAX_VALUE;
+		playouts = 0;
+		ArrayList<Turn> turns = turnGenerator.findTurns(hand, board, tilesPlaced);
+
+		//Nothing to choose between, so nothing is played out
+		if (turns.size() <= 1)
+			return turns.isEmpty() ? null : turns.get(0);
+		turns.sort((a, b) -> Integer.compare(b.getScore(), a.getScore()));
+		while (turns.size() > ROOT_WIDTH)
+			turns.remove(turns.size() - 1);
+
+		if (workers == null) {
+			workers = new Worker[threads];
+			for (int i = 0; i < threads; i++)
+				workers[i] = new Worker();
+		}
+		long seed = hand.getPositionKey(board, 0);
+		BooleanSupplier stopped = () -> stopTime > start;
+		Future<?>[] futures = new Future<?>[threads];
+		for (int i = 0; i < threads; i++) {
+			Worker worker = workers[i];
+			worker.setPosition(hand, board, turns, deckSize, opponentTiles, seed + i);
+			if (i > 0)
+				futures[i] = getPool().submit(() -> worker.search(deadline, maxPlayouts, stopped));
+		}
+		workers[0].search(deadline, maxPlayouts, stopped);
+
+		//Add up the threads' statistics, and play the turn tried most
+		int[] visits = new int[turns.size()];
+		for (int i = 0; i < threads; i++) {
+			try {
+				if (i > 0)
+					futures[i].get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+			for (int t = 0; t < visits.length; t++)
+				visits[t] += workers[i].visits[t];
+			playouts += workers[i].playouts;
+		}
+
+		int best = 0;
+		for (int t = 1; t < visits.length; t++) {
+			if (visits[t] > visits[best])
+				best = t;
+		}
+		return turns.get(best);
+	}
+
+	/**
+	 * Stops a search running on another thread, which returns its best turn so far.  A
+	 * search started after the call isn't affected
+	 */
+	public void stop() {
+		stopTime = System.nanoTime();
+	}
+
+	/**
+	 * Returns the number of playouts in the last search, over all threads
+	 * @return number of playouts
+	 */
+	public long getPlayouts() {
+		return playouts;
+	}
+
+	/**
+	 * Returns the pool the searches' extra threads run in, starting it the first time.  Its
+	 * threads are daemons, so it never has to be shut down
+	 */
+	private static synchronized ExecutorService getPool() {
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+				Thread thread = new Thread(runnable, "MonteCarloSearch");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return pool;
+	}
+
+	/**
+	 * One thread's search, on its own copy of the position
+	 */
+	private static class Worker {
+
+		private final TurnGenerator turnGenerator = new TurnGenerator();
+		private SplittableRandom random;
+
+		private Board board;
+		private Hand hand;
+		private Hand opponent;
+		private ArrayList<Turn> turns;
+		private int opponentTiles;
+
+		//Unseen tiles, shuffled every playout: the opponent's hand, then the deck
+		private int[] unseen = new int[Deck.MAX_SIZE];
+		private int unseenCount;
+		private int deckSize;
+		private int drawn;
+
+		//Slots refilled after each turn of a playout, so they can be emptied again
+		private int[] refills = new int[(PLAYOUT_TURNS + 1) * Turn.MAX_TILES];
+		private int[] refillCount = new int[PLAYOUT_TURNS + 1];
+		private Hand[] mover = new Hand[PLAYOUT_TURNS + 1];
+
+		private int[] visits = new int[ROOT_WIDTH];
+		private double[] reward = new double[ROOT_WIDTH];
+		private long playouts;
+
+		void setPosition(Hand hand, Board board, ArrayList<Turn> turns, int deckSize, int opponentTiles, long seed) {
+			this.board = new Board(board);
+			this.hand = new Hand(hand);
+			opponent = new Hand(hand);
+			for (int i = 0; i < opponent.getHandLength(); i++)
+				opponent.removeTileCode(i);
+			this.turns = turns;
+			random = new SplittableRandom(seed);
+
+			//Unseen tiles, the copy number doesn't matter to the rules
+			int[] remaining = new int[TileCode.KINDS];
+			for (int kind = 0; kind < TileCode.KINDS; kind++)
+				remaining[kind] = TileCode.COPIES;
+			for (int i = 0; i < board.getTileCount(); i++)
+				remaining[TileCode.kind(board.getTileCode(board.getTileX(i), board.getTileY(i)))]--;
+			for (int i = 0; i < hand.getHandLength(); i++) {
+				if (hand.getTileCode(i) != TileCode.EMPTY)
+					remaining[TileCode.kind(hand.getTileCode(i))]--;
+			}
+			unseenCount = 0;
+			for (int kind = 0; kind < TileCode.KINDS; kind++) {
+				for (int copy = 0; copy < remaining[kind]; copy++)
+					unseen[unseenCount++] = TileCode.encode(kind / TileCode.SHAPES, kind % TileCode.SHAPES, copy);
+			}
+			this.opponentTiles = Math.min(opponentTiles, unseenCount);
+			this.deckSize = Math.min(deckSize, unseenCount - this.opponentTiles);
+
+			for (int i = 0; i < turns.size(); i++) {
+				visits[i] = 0;
+				reward[i] = 0;
+			}
+			playouts = 0;
+		}
+
+		void search(long deadline, long maxPlayouts, BooleanSupplier stopped) {
+			do {
+				playout();
+			} while (playouts < maxPlayouts && System.nanoTime() < deadline && !stopped.getAsBoolean());
+		}
+
+		private void playout() {
+			playouts++;
+
+			//Deal the opponent's hand and the deck order
+			for (int i = unseenCount - 1; i > 0; i--) {
+				int sw = random.nextInt(i + 1);
+				int temp = unseen[i];
+				unseen[i] = unseen[sw];
+				unseen[sw] = temp;
+			}
+			for (int i = 0; i < opponentTiles; i++)
+				opponent.addTileCode(i, unseen[i]);
+			drawn = opponentTiles;
+
+			//Play the chosen turn, then both players play Hard's turn, the opponent first
+			int choice = select();
+			int made = 0;
+			double result = play(hand, turns.get(choice), made++);
+			boolean ended = hand.isEmpty();
+			for (int t = 0; t < PLAYOUT_TURNS && !ended; t++) {
+				Hand player = (t & 1) == 0 ? opponent : hand;
+				Turn turn = turnGenerator.findBestTurn(player, board, board.getTileCount());
+				if (turn == null)
+					continue;
+				int points = play(player, turn, made++);
+				result += player == hand ? points : -points;
+				ended = player.isEmpty();
+			}
+
+			//Take everything back
+			while (made > 0) {
+				made--;
+				for (int i = 0; i < refillCount[made]; i++)
+					mover[made].removeTileCode(refills[made * Turn.MAX_TILES + i]);
+				mover[made].unmakeTurn(board);
+			}
+			for (int i = 0; i < opponent.getHandLength(); i++)
+				opponent.removeTileCode(i);
+
+			visits[choice]++;
+			reward[choice] += result;
+		}
+
+		/**
+		 * Plays a turn and refills the hand from the dealt deck
+		 * @return points scored, with the bonus for using the last tile
+		 */
+		private int play(Hand player, Turn turn, int made) {
+			int points = player.makeTurn(turn, board);
+			mover[made] = player;
+			refillCount[made] = 0;
+			while (drawn < opponentTiles + deckSize && !player.isFull()) {
+				int slot = player.findEmptySlot();
+				player.addTileCode(slot, unseen[drawn++]);
+				refills[made * Turn.MAX_TILES + refillCount[made]++] = slot;
+			}
+			if (player.isEmpty())
+				points += GameEngine.END_BONUS;
+			return points;
+		}
+
+		/**
+		 * Picks a turn with UCB1, trying every turn once first
+		 */
+		private int select() {
+			int total = 0;
+			for (int i = 0; i < turns.size(); i++) {
+				if (visits[i] == 0)
+					return i;
+				total += visits[i];
+			}
+			double log = Math.log(total);
+			int best = 0;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < turns.size(); i++) {
+				double value = reward[i] / visits[i] + EXPLORATION * Math.sqrt(log / visits[i]);
+				if (value > bestValue) {
+					best = i;
+					bestValue = value;
+				}
+			}
+			return best;
+		}
+	}
+}
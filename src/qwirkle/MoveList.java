@@ -0,0 +1,118 @@
+package qwirkle;
+import java.util.Arrays;
+
+/**
+ * A growable list of one-tile moves, each packed into a long, for move generation that runs
+ * on every key press or deep in a search.  The caller owns the list and reuses it, so
+ * finding moves allocates nothing once the list has grown.
+ * <p>
+ * A move packs the cell (as Board.cellKey) in the low 32 bits, the hand index in the next 8,
+ * and the score above that.  Move objects are only made by toMove, for code that wants them.
+ * @author Gabriel Stackhouse
+ *
+ */
+public class MoveList {
+
+	private long[] moves;
+	private int size;
+
+	/**
+	 * Constructs an empty list
+	 */
+	public MoveList() {
+		this(64);
+	}
+
+	/**
+	 * Constructs an empty list
+	 * @param capacity number of moves to make room for
+	 */
+	public MoveList(int capacity) {
+		moves = new long[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Packs a move into a long
+	 * @param index index of the tile in hand
+	 * @param x x index
+	 * @param y y index
+	 * @param score score of the move
+	 * @return packed move
+	 */
+	public static long pack(int index, int x, int y, int score) {
+		return ((long) score << 40) | ((long) (index & 0xFF) << 32) | (Board.cellKey(x, y) & 0xFFFFFFFFL);
+	}
+
+	public static int indexOf(long move) {
+		return (int) (move >>> 32) & 0xFF;
+	}
+
+	public static int xOf(long move) {
+		return Board.cellX((int) move);
+	}
+
+	public static int yOf(long move) {
+		return Board.cellY((int) move);
+	}
+
+	public static int scoreOf(long move) {
+		return (int) (move >> 40);
+	}
+
+	public void add(int index, int x, int y, int score) {
+		if (size == moves.length)
+			moves = Arrays.copyOf(moves, size * 2);
+		moves[size++] = pack(index, x, y, score);
+	}
+
+	/**
+	 * Removes a move.  The last move takes its place, so the order isn't kept
+	 * @param i index of move
+	 */
+	public void remove(int i) {
+		moves[i] = moves[--size];
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public long get(int i) {
+		return moves[i];
+	}
+
+	public int getIndex(int i) {
+		return indexOf(moves[i]);
+	}
+
+	public int getX(int i) {
+		return xOf(moves[i]);
+	}
+
+	public int getY(int i) {
+		return yOf(moves[i]);
+	}
+
+	public int getScore(int i) {
+		return scoreOf(moves[i]);
+	}
+
+	/**
+	 * Makes a Move object for a move
+	 * @param i index of move
+	 * @param hand hand the move's tile is in
+	 * @return move
+	 */
+	public Move toMove(int i, Hand hand) {
+		int index = getIndex(i);
+		return new Move(Tile.of(hand.getTileCode(index)), index, getX(i), getY(i), getScore(i));
+	}
+}
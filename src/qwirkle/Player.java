@@ -0,0 +1,28 @@
+package qwirkle;
+
+/**
+ * Decides what a player does on their turn.  The GameEngine asks the player whose turn it is
+ * for the tiles to place, and if it gets none, for the tiles to swap.
+ * @author Gabriel Stackhouse
+ *
+ */
+public interface Player {
+
+	/**
+	 * Chooses the tiles to place this turn
+	 * @param game the game being played
+	 * @param hand the player's hand
+	 * @return turn to play, null to swap tiles or pass
+	 */
+	Turn chooseTurn(GameEngine game, Hand hand);
+
+	/**
+	 * Chooses the tiles to swap with the deck.  Only called if chooseTurn returned null
+	 * @param game the game being played
+	 * @param hand the player's hand
+	 * @return true for each hand index to swap, null to pass
+	 */
+	default boolean[] chooseSwap(GameEngine game, Hand hand) {
+		return null;
+	}
+}
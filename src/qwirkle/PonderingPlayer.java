@@ -0,0 +1,248 @@
+package qwirkle;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An AI that thinks on the opponent's time.  While the opponent chooses their turn, it plays
+ * their likeliest turns on a copy of the game and searches its reply to each, one at a time
+ * on a background thread.  When its own turn comes it answers at once if it already searched
+ * the position it is in, waits for the search if it is the one running, and otherwise stops
+ * pondering and searches as usual.
+ * <p>
+ * The opponent's new tiles don't matter to the reply, only how many they hold, so a position
+ * is known by the board, the deck size and the opponent's tile count.  A swap or pass is
+ * pondered as one position, as neither changes those.  Only the Expert and Master AIs ponder,
+ * the others answer in a few milliseconds anyway.
+ * <p>
+ * Pondered searches aren't counted in the metrics or recorded as AI turns, since most are
+ * never played.  A turn answered from them is counted and recorded like any other, with the
+ * time it took to answer and what its pondered search looked at
+ * @author Gabriel Stackhouse
+ *
+ */
+public class PonderingPlayer implements Player {
+
+	/** Number of the opponent's turns to search a reply to, best scoring first */
+	public static final int PONDER_TURNS = 8;
+
+	//How often a waiting turn checks on the background search, in milliseconds
+	private static final long POLL = 10;
+
+	//One thread for every player, so games started one after another reuse it
+	private static final ExecutorService THREAD = Executors.newSingleThreadExecutor(runnable -> {
+		Thread ponder = new Thread(runnable, "Ponder");
+		ponder.setDaemon(true);
+		return ponder;
+	});
+
+	private final AiPlayer ai;
+
+	private Future<?> pondering;
+	private volatile boolean cancelled;
+
+	//Position being searched, and replies found, by the background thread
+	private volatile Reply searching;
+	private final ArrayList<Reply> replies = new ArrayList<Reply>();
+
+	private int hits;
+	private int misses;
+
+	/**
+	 * @param ai AI to choose and ponder the turns
+	 */
+	public PonderingPlayer(AiPlayer ai) {
+		this.ai = ai;
+	}
+
+	public AiPlayer getAi() {
+		return ai;
+	}
+
+	/**
+	 * Starts pondering the opponent's turn.  Call it as the opponent's turn starts, before
+	 * the opponent changes the board
+	 * @param game game in which the opponent is about to play
+	 */
+	public void ponder(GameEngine game) {
+		stopPondering();
+		if (ai.getDifficulty() < AiPlayer.EXPERT || game.isGameOver())
+			return;
+
+		int opponent = game.getCurrentPlayer();
+		Board board = new Board(game.getBoard());
+		Hand hand = new Hand(game.getHand(opponent == 0 ? 1 : 0));
+		Hand opponentHand = new Hand(game.getHand(opponent));
+		int tilesPlaced = game.getTilesPlaced();
+		int deckSize = game.getDeck().getSize();
+
+		cancelled = false;
+		replies.clear();
+		pondering = THREAD.submit(() -> ponder(board, hand, opponentHand, tilesPlaced, deckSize));
+	}
+
+	/**
+	 * Searches replies to the opponent's best turns, then to a swap or pass, until cancelled
+	 */
+	private void ponder(Board board, Hand hand, Hand opponent, int tilesPlaced, int deckSize) {
+		ArrayList<Turn> turns = opponent.findTurns(board, tilesPlaced);
+		turns.sort((a, b) -> Integer.compare(b.getScore(), a.getScore()));
+		if (turns.size() > PONDER_TURNS)
+			turns.subList(PONDER_TURNS, turns.size()).clear();
+		turns.add(null);
+
+		for (Turn turn : turns) {
+			if (cancelled)
+				return;
+			int placed = turn == null ? 0 : turn.size();
+			int drawn = Math.min(placed, deckSize);
+			if (turn != null)
+				opponent.makeTurn(turn, board);
+
+			Reply reply = new Reply(board.getHashKey(), deckSize - drawn, opponent.getHandSize() + drawn);
+			searching = reply;
+			Turn best = ai.choose(hand, board, tilesPlaced + placed, reply.deckSize, reply.opponentTiles);
+			if (best != null) {
+				reply.turn = new Turn();
+				reply.turn.copy(best);
+			}
+			reply.candidates = ai.getCandidates(best, hand, board);
+			reply.depth = ai.getDepth();
+			synchronized (replies) {
+				replies.add(reply);
+			}
+			searching = null;
+
+			if (turn != null)
+				opponent.unmakeTurn(board);
+		}
+	}
+
+	/**
+	 * Stops pondering and waits for the background thread to finish.  Call it when the game
+	 * ends on the opponent's turn
+	 */
+	public void stopPondering() {
+		finish(null);
+	}
+
+	/**
+	 * Stops pondering, letting the search of one position finish first
+	 * @param wanted position whose search to let finish, null to stop any search
+	 */
+	private void finish(Reply wanted) {
+		if (pondering == null)
+			return;
+		cancelled = true;
+		while (true) {
+			Reply current = searching;
+			if (current == null || !current.matches(wanted))
+				ai.stop();
+			try {
+				pondering.get(POLL, TimeUnit.MILLISECONDS);
+				break;
+			}
+			catch (TimeoutException e) {
+				//A search started just after the stop, stop it again
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		pondering = null;
+	}
+
+	/**
+	 * Answers with the pondered reply to the position if there is one, otherwise searches
+	 */
+	@Override
+	public Turn chooseTurn(GameEngine game, Hand hand) {
+		Tracing.AiTurn event = Tracing.INSTANCE.beginAiTurn();
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		Board board = game.getBoard();
+		Hand opponent = game.getHand(game.getCurrentPlayer() == 0 ? 1 : 0);
+		Reply position = new Reply(board.getHashKey(), game.getDeck().getSize(), opponent.getHandSize());
+		finish(position);
+
+		Reply reply = null;
+		synchronized (replies) {
+			for (Reply r : replies) {
+				if (r.matches(position))
+					reply = r;
+			}
+			replies.clear();
+		}
+
+		//The key could in theory be shared by another board, so check the turn still fits
+		if (reply != null && (reply.turn == null || GameEngine.isValidTurn(reply.turn, hand, board, game.getTilesPlaced()))) {
+			hits++;
+			if (Metrics.ENABLED)
+				Metrics.aiTurn(ai.getDifficulty(), start);
+			if (event != null && event.shouldCommit())
+				ai.record(event, reply.turn, reply.candidates, reply.depth, game.getTilesPlaced());
+			return reply.turn;
+		}
+		if (ai.getDifficulty() >= AiPlayer.EXPERT)
+			misses++;
+
+		//The search records its own event
+		return ai.chooseTurn(game, hand);
+	}
+
+	@Override
+	public boolean[] chooseSwap(GameEngine game, Hand hand) {
+		return ai.chooseSwap(game, hand);
+	}
+
+	/**
+	 * Returns the number of turns answered with a pondered reply
+	 * @return number of turns
+	 */
+	public int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of Expert or Master turns that had to be searched after all
+	 * @return number of turns
+	 */
+	public int getMisses() {
+		return misses;
+	}
+
+	public String toString() {
+		return ai.toString();
+	}
+
+	/**
+	 * A position the AI may have to answer, and its reply once searched
+	 */
+	private static class Reply {
+
+		final long boardKey;
+		final int deckSize;
+		final int opponentTiles;
+		Turn turn;
+		long candidates;
+		int depth;
+
+		Reply(long boardKey, int deckSize, int opponentTiles) {
+			this.boardKey = boardKey;
+			this.deckSize = deckSize;
+			this.opponentTiles = opponentTiles;
+		}
+
+		boolean matches(Reply other) {
+			return other != null && boardKey == other.boardKey && deckSize == other.deckSize
+					&& opponentTiles == other.opponentTiles;
+		}
+	}
+}
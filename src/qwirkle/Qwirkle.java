@@ -1,9 +1,7 @@
 package qwirkle;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.UncheckedIOException;
 
-import com.googlecode.lanterna.TextColor;
-import com.googlecode.lanterna.graphics.TextGraphics;
 import com.googlecode.lanterna.screen.Screen;
 import com.googlecode.lanterna.screen.TerminalScreen;
 import com.googlecode.lanterna.terminal.DefaultTerminalFactory;
@@ -21,280 +19,237 @@ public class Qwirkle {
 	private static int tilesPlaced;
 	
 	private static int aiDifficulty;
-
+	
+	//Draws the screen, redrawing only what changed once per key press
+	private static Renderer renderer;
+	
+	//Moves of the chosen tile that fit the turn so far
+	private static MoveList validMoves = new MoveList();
+	
+	//Moves of every tile in the hand, kept until the board or hand changes
+	private static MoveList handMoves = new MoveList();
+	private static long handMovesBoard;
+	private static int handMovesPlaced = -1;
+	private static int[] handMovesCodes = new int[0];
+	
 	public static void main(String[] args) throws IOException, InterruptedException {
 		
+		Metrics.start();
+		
 		//Initialize Game Screen
 		Terminal terminal = new DefaultTerminalFactory().createTerminal();
 		Screen screen = new TerminalScreen(terminal);
-		TextGraphics graphics = screen.newTextGraphics();
 		screen.startScreen();
 		screen.setCursorPosition(null);
-		graphics.putString(0, 0, "Player Score: ");
-		graphics.putString(61, 0, "Computer Score: ");
-		graphics.putString(37, 0, "Qwirkle");
-		graphics.putString(71, 22, "Deck: ");
+		renderer = new Renderer(screen);
 		
 		boolean run = true;
+		TerminalPlayer user = new TerminalPlayer(terminal);
 		while (run) {
-		
-			//Create game variables
-			Deck deck = new Deck();
-			Board board = new Board();
-			Hand player = new Hand(deck);
-			Hand computer = new Hand(deck);
-			int shuffleCount = 0; //we're going to re-shuffle the deck every three turns
-			tilesPlaced = 0;
-			refreshGameBoard(board, player, computer, screen, graphics, deck);
+			
+			//Create game
+			GameEngine game = new GameEngine(user, new AiPlayer(AiPlayer.EASY));
+			Hand player = game.getHand(0);
+			Hand computer = game.getHand(1);
+			renderer.setGame(game.getBoard(), player, computer, game.getDeck());
+			renderer.centerView(0, 0);
 			
 			//Choose AI difficulty
 			aiDifficulty = 0;
-			printMessage(screen, graphics, "Choose difficulty: [0] Easy, [1] Moderate, [2] Hard");
+			printMessage("Choose difficulty: [0] Easy, [1] Moderate, [2] Hard, [3] Expert, [4] Master");
 			boolean isValidKey = false;
 			while (!isValidKey) {
-				KeyStroke key = terminal.readInput();
+				KeyStroke key = readKey(terminal);
 				if (key.getKeyType() == KeyType.Character) {
 					char input = key.getCharacter();
-					if (input == '0' || input == '1' || input == '2') {
+					if (input >= '0' && input <= '4') {
 						aiDifficulty = Character.getNumericValue(input);
 						isValidKey = true;
 					}
 				}
 				
 				if (!isValidKey)
-					printMessage(screen, graphics, "Try again: [0] Easy, [1] Moderate, [2] Hard");
+					printMessage("Try again: [0] Easy, [1] Moderate, [2] Hard, [3] Expert, [4] Master");
 			}
-	
+			PonderingPlayer ai = new PonderingPlayer(new AiPlayer(aiDifficulty));
+			game.setPlayer(1, ai);
+			
 			//The game loop
-			while (!deck.isEmpty() || (!player.isEmpty() && !computer.isEmpty())) {
-				refreshGameBoard(board, player, computer, screen, graphics, deck);
-				
-				//Perform move based off user's choice
-				char option = playOrSwap(terminal, screen, graphics);
-				if (option == 'p') {
-					if (!playTiles(terminal, screen, graphics, player, board, -1))
-						continue;
-					else
-						player.fillHand(deck);
-				}
-				else if (option == 's' && !deck.isEmpty() && !swapTiles(player, deck, terminal, screen, graphics))
-					continue;
-				else if (deck.isEmpty()) {
-					printMessage(screen , graphics, "No tiles in deck to swap.  Press any key to continue.");
-					terminal.readInput();
-					if (!playTiles(terminal, screen, graphics, player, board, -1))
-						continue;
-					else
-						player.fillHand(deck);
-				}
-				
-				//Check for game end
-				if (isGameOver(deck, player))
-					break;
+			while (!game.isGameOver()) {
 				
-				Thread.sleep(750);
-				
-				//AI makes move
-				//	Difficulty
-				Move aiMove = null;
-				if (aiDifficulty == 0)
-					aiMove = computer.aiEasy(board, tilesPlaced);
-				else if (aiDifficulty == 1)
-					aiMove = computer.aiModerate(board, tilesPlaced);
-				else 
-					aiMove = computer.aiHard(board, tilesPlaced);
+				//The computer thinks while the user chooses, and shows the user's turn before answering
+				if (game.getCurrentPlayer() == 0)
+					ai.ponder(game);
+				else
+					renderer.frame();
 				
-				//Place Tile
-				if (aiMove != null) {
-					board.placeTile(computer.removeTile(aiMove.getIndex()), aiMove.getX(), aiMove.getY());
-					tilesPlaced++;
-					computer.addToScore(aiMove.getScore());
-					computer.addTileFromDeck(deck);
+				try {
+					game.playTurn();
 				}
-				
-				//Check for game end
-				if (isGameOver(deck, computer))
-					break;
-				
-				//Shuffle deck every three rounds
-				if (shuffleCount < 3)
-					shuffleCount++;
-				else if (!deck.isEmpty()) {
-					deck.shuffle();
-					shuffleCount = 0;
+				catch (UncheckedIOException e) {
+					throw e.getCause();
 				}
 				
-				//Refresh the board
-				refreshGameBoard(board, player, computer, screen, graphics, deck);
-				
+				//Draw the tiles placed, keeping the computer's in view
+				Turn last = game.getLastTurn();
+				if (last != null) {
+					renderer.markTurn(last);
+					renderer.scrollTo(last.getX(0), last.getY(0));
+				}
 			}
-	
-	
+			ai.stopPondering();
+			
 			//Calculate winner
 			if (player.getScore() > computer.getScore()) {
-				printMessage(screen, graphics, "You win!  Play again? [y]es, [n]o");
+				printMessage("You win!  Play again? [y]es, [n]o");
 			}
 			else if (player.getScore() == computer.getScore()) {
-				printMessage(screen, graphics, "Tie game.  Play again? [y]es, [n]o");
+				printMessage("Tie game.  Play again? [y]es, [n]o");
 			}
 			else
-				printMessage(screen, graphics, "Better luck next time.  Play again? [y]es, [n]o");
+				printMessage("Better luck next time.  Play again? [y]es, [n]o");
 			
 			//Play again?
 			KeyStroke key = null;
 			while (key == null || (key != null && (key.getCharacter() != 'y' && key.getCharacter() != 'n'))) {
-				key = terminal.readInput();
+				key = readKey(terminal);
 			}
-
+			
 			if (key.getCharacter() == 'n')
 				run = false;
-			
-		}	
+		
+		}
 		
 		screen.stopScreen();
 	}
 	
 	/**
-	 * Refreshes the game board
-	 * @param board game board
-	 * @param player the user
-	 * @param computer the AI opponent
-	 * @param screen screen object
-	 * @param graphics graphics object
-	 * @throws IOException
+	 * The user, choosing their turns with the keyboard
 	 */
-	private static void refreshGameBoard(Board board, Hand player, Hand computer, Screen screen, TextGraphics graphics, Deck deck) throws IOException {
-		graphics.setBackgroundColor(TextColor.ANSI.BLACK);
-		for (int i = 0; i < board.getYMax(); i++) {
-			for (int j = 0; j < board.getXMax(); j++) {
-				if (i == 0 || i == 20) {
-					graphics.setForegroundColor(TextColor.ANSI.WHITE);
-					graphics.setCharacter(j, i + 1, '-');
-				}
-				else if (j == 0 || j == 79) {
-					graphics.setForegroundColor(TextColor.ANSI.WHITE);
-					graphics.setCharacter(j, i + 1, '|');
-				}
-				else {
-					Tile tile = board.getTile(j, i);
-					if (tile == null) {
-						graphics.setForegroundColor(TextColor.ANSI.WHITE);
-						graphics.setCharacter(j, i + 1, ' ');
+	private static class TerminalPlayer implements Player {
+		
+		private Terminal terminal;
+		private boolean[] toSwap;
+		
+		TerminalPlayer(Terminal terminal) {
+			this.terminal = terminal;
+		}
+		
+		@Override
+		public Turn chooseTurn(GameEngine game, Hand hand) {
+			toSwap = null;
+			try {
+				while (true) {
+					
+					//Perform move based off user's choice
+					char option = playOrSwap(terminal);
+					if (option == 's' && !game.getDeck().isEmpty()) {
+						toSwap = swapTiles(hand, game.getDeck(), terminal);
+						if (toSwap != null)
+							return null;
 					}
 					else {
-						graphics.setForegroundColor(tile.getTextColor());
-						graphics.setCharacter(j, i + 1, tile.getSymbol());
+						if (option == 's') {
+							printMessage("No tiles in deck to swap.  Press any key to continue.");
+							readKey(terminal);
+						}
+						Turn turn = playTiles(terminal, hand, game.getBoard(), -1, game.getTilesPlaced());
+						if (turn != null)
+							return turn;
 					}
 				}
 			}
-		}
-		
-		//Hand
-		int lastXPos = 35;
-		for (int i = 0; i < 6; i++) {
-			Tile tile = player.getTile(i);
-			if (tile == null) {
-				graphics.setForegroundColor(TextColor.ANSI.WHITE);
-				graphics.setCharacter(lastXPos, 22, 'X');
-			}
-			else {
-				graphics.setForegroundColor(tile.getTextColor());
-				graphics.setCharacter(lastXPos, 22, tile.getSymbol());
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
-			graphics.setForegroundColor(TextColor.ANSI.WHITE);
-			graphics.setCharacter(lastXPos, 23, (char) ('0' + i));
-			lastXPos += 2;
-		}	
-		
-		//Scores
-		graphics.setForegroundColor(TextColor.ANSI.WHITE);
-		graphics.putString(14, 0, "" + player.getScore());
-		graphics.putString(77, 0, "" + computer.getScore());
-		graphics.putString(77, 22, "  ");
-		graphics.putString(77, 22, "" + deck.getSize());
+		}
 		
-		screen.refresh();
+		@Override
+		public boolean[] chooseSwap(GameEngine game, Hand hand) {
+			return toSwap;
+		}
 	}
 	
 	/**
-	 * Draws yellow circles on the map for all possible moves player can make with one tile
-	 * @param moves ArrayList of moves
-	 * @param screen 
-	 * @param graphics
+	 * Draws what changed on screen, then waits for a key
+	 * @param terminal
+	 * @return key pressed
 	 * @throws IOException
 	 */
-	private static void highlightValidMoves(ArrayList<Move> moves, Screen screen, TextGraphics graphics) throws IOException {
-		if (aiDifficulty == 2) return; //This is hard mode, you find your own moves!
-		
-		graphics.setForegroundColor(TextColor.ANSI.YELLOW);
-		graphics.setBackgroundColor(TextColor.ANSI.BLACK);
-		for (int i = 0; i < moves.size(); i++) {
-			int x = moves.get(i).getX();
-			int y = moves.get(i).getY();
-			graphics.setCharacter(x, y + 1, 'O');
-		}
-		graphics.setForegroundColor(TextColor.ANSI.WHITE);
-		screen.refresh();
+	private static KeyStroke readKey(Terminal terminal) throws IOException {
+		renderer.frame();
+		return terminal.readInput();
+	}
+	
+	/**
+	 * Shows yellow circles on the map for all possible moves player can make with one tile
+	 * @param moves list of moves
+	 */
+	private static void highlightValidMoves(MoveList moves) {
+		renderer.setHighlights(moves);
 	}
 	
-	private static void unHighlightValidMoves(ArrayList<Move> moves, Screen screen, TextGraphics graphics) throws IOException {
+	/**
+	 * Finds the moves of one tile in the hand that fit the turn so far.  The moves of the
+	 * whole hand are found with one findMoves and kept until a tile is placed or taken back,
+	 * or the hand changes, so choosing another tile doesn't search the board again
+	 * @param index hand index of the tile
+	 * @param turn tiles placed so far this turn
+	 * @param moves list to fill, cleared first
+	 */
+	private static void findValidMoves(Hand hand, int index, Board board, Turn turn, MoveList moves) {
+		if (!isHandMovesCurrent(hand, board)) {
+			hand.findMoves(0, hand.getHandLength() - 1, board, tilesPlaced, handMoves);
+			handMovesBoard = board.getHashKey();
+			handMovesPlaced = tilesPlaced;
+			if (handMovesCodes.length != hand.getHandLength())
+				handMovesCodes = new int[hand.getHandLength()];
+			for (int i = 0; i < handMovesCodes.length; i++)
+				handMovesCodes[i] = hand.getTileCode(i);
+		}
 		
-		//Un-highlight moves
-		if (moves != null) {
-			graphics.setForegroundColor(TextColor.ANSI.WHITE);
-			for (int i = 0; i < moves.size(); i++) {
-				int x2 = moves.get(i).getX();
-				int y2 = moves.get(i).getY();
-				graphics.setCharacter(x2, y2+1, ' ');
-			}
+		moves.clear();
+		for (int i = 0; i < handMoves.size(); i++) {
+			if (handMoves.getIndex(i) == index && GameEngine.fitsTurn(turn, handMoves.getX(i), handMoves.getY(i), board))
+				moves.add(index, handMoves.getX(i), handMoves.getY(i), handMoves.getScore(i));
 		}
 	}
 	
 	/**
-	 * Helper method that prints a message on the bottom of the game screen
-	 * @param screen game screen
-	 * @param graphics graphics
-	 * @param msg message to print
-	 * @throws IOException
+	 * Checks if handMoves were found for this board and these tiles in these slots
 	 */
-	private static void printMessage(Screen screen, TextGraphics graphics, String msg) throws IOException {
-		graphics.setForegroundColor(TextColor.ANSI.WHITE);
-		graphics.setBackgroundColor(TextColor.ANSI.BLACK);
-		graphics.putString(0, 23, "                                                                                        ");
-		graphics.putString(0, 23, msg);
-		screen.refresh();
+	private static boolean isHandMovesCurrent(Hand hand, Board board) {
+		if (handMovesPlaced != tilesPlaced || handMovesBoard != board.getHashKey()
+				|| handMovesCodes.length != hand.getHandLength())
+			return false;
+		for (int i = 0; i < handMovesCodes.length; i++) {
+			if (handMovesCodes[i] != hand.getTileCode(i))
+				return false;
+		}
+		return true;
 	}
 	
 	/**
-	 * Checks if the game is over, and adds the bonus to the player's score who ended it
-	 * @param deck the deck
-	 * @param hand player who ended the game
-	 * @return
+	 * Helper method that prints a message on the bottom of the game screen
+	 * @param msg message to print
 	 */
-	private static boolean isGameOver(Deck deck, Hand hand) {
-		//Check for game end
-		if (deck.isEmpty() && hand.isEmpty()) {
-			hand.addToScore(6);
-			return true;
-		}
-		return false;
+	private static void printMessage(String msg) {
+		renderer.setMessage(msg);
 	}
 	
 	/**
 	 * Gets input from user that chooses what to do on their turn
 	 * @param terminal
-	 * @param screen
-	 * @param graphics
 	 * @return 'p' to play tiles, 's' to swap them
 	 * @throws IOException
 	 */
-	private static char playOrSwap(Terminal terminal, Screen screen, TextGraphics graphics) throws IOException {
-		printMessage(screen, graphics, "Choose option: [p]lay or [s]wap?");
+	private static char playOrSwap(Terminal terminal) throws IOException {
+		printMessage("Choose option: [p]lay or [s]wap?");
 		char result = '0'; //Give an initial value to compile
 		boolean isValidKey = false;
 		
 		while (!isValidKey) {
-			KeyStroke key = terminal.readInput();
+			KeyStroke key = readKey(terminal);
 			if (key.getKeyType() == KeyType.Character) {
 				result = Character.toLowerCase(key.getCharacter());
 				if (result == 'p' || result == 's')
@@ -302,28 +257,30 @@ public class Qwirkle {
 			}
 			
 			if (!isValidKey)
-				printMessage(screen, graphics, "Invalid key. Try again: [p]lay or [s]wap?");
-			
+				printMessage("Invalid key. Try again: [p]lay or [s]wap?");
+		
 		}
 		
 		return result;
 	}
 	
 	/**
-	 * User plays tiles
+	 * User chooses tiles to play.  The tiles are shown on the board while they are chosen,
+	 * then put back in the hand for the game to play
 	 * @param terminal
-	 * @param screen
-	 * @param graphics
+	 * @param placed number of tiles placed before this turn
+	 * @return the turn, null if the user went back
 	 * @throws IOException
 	 */
-	private static boolean playTiles(Terminal terminal, Screen screen, TextGraphics graphics, Hand hand, Board board, int startIndex) throws IOException {
+	private static Turn playTiles(Terminal terminal, Hand hand, Board board, int startIndex, int placed) throws IOException {
 		
 		//Initialize variables
-		ArrayList<Move> turn = new ArrayList<Move>();
+		Turn turn = new Turn();
 		boolean isSpace = false;
+		tilesPlaced = placed;
 		
-		while (!isSpace) {
-		
+		while (!isSpace && !hand.isEmpty()) {
+			
 			//Find index of first tile in hand
 			int min = startIndex;
 			if (min < 0) {
@@ -335,87 +292,114 @@ public class Qwirkle {
 			
 			//Get tile from hand
 			int index = min;
-			setHandCursor(index, hand, graphics);
-			screen.refresh();
-			printMessage(screen, graphics, "Choose tile to play.  Arrow keys + Enter to choose, Esc to go back");
+			renderer.setHandCursor(index);
+			if (turn.size() == 0)
+				printMessage("Choose tile to play.  Arrow keys + Enter to choose, Esc to go back");
+			else
+				printMessage("Choose next tile.  Arrow keys + Enter to choose, Space to end turn, Esc to undo");
 			KeyStroke key = null;
-			while (key == null || (key.getKeyType() != KeyType.Enter && key.getKeyType() != KeyType.Escape)) {
-				key = terminal.readInput();
-				
-				if (key.getKeyType() == KeyType.ArrowRight && index < hand.getHandLength() - 1) {
-					index = incrementHandCursor(hand, index, 1, null, graphics);
-					screen.refresh();
-				}
-				else if (key.getKeyType() == KeyType.ArrowLeft && index > 0) {
-					index = incrementHandCursor(hand, index, -1, null, graphics);
-					screen.refresh();
-				}
+			while (key == null || (key.getKeyType() != KeyType.Enter && key.getKeyType() != KeyType.Escape && !isSpace)) {
+				key = readKey(terminal);
 				
+				if (key.getKeyType() == KeyType.ArrowRight && index < hand.getHandLength() - 1)
+					index = incrementHandCursor(hand, index, 1);
+				else if (key.getKeyType() == KeyType.ArrowLeft && index > 0)
+					index = incrementHandCursor(hand, index, -1);
+				else if (key.getKeyType() == KeyType.Character && key.getCharacter() == ' ' && turn.size() > 0)
+					isSpace = true;
+			
+			}
+			
+			//End the turn if space is hit
+			if (isSpace) {
+				renderer.setHandCursor(-1);
+				break;
 			}
 			
 			//If escape is hit, go back to previous
 			if (key.getKeyType() == KeyType.Escape) {
-				if (turn == null || turn.size() == 0)
-					return false;
+				if (turn.size() == 0) {
+					renderer.setHandCursor(-1);
+					return null;
+				}
 				else {
-					Move move = turn.remove(turn.size() - 1);
-					hand.addTileFromBoard(board, move.getX(), move.getY());
+					int last = turn.size() - 1;
+					hand.addTileCode(turn.getIndex(last), board.removeTileCode(turn.getX(last), turn.getY(last)));
+					tilesPlaced--;
+					renderer.markCell(turn.getX(last), turn.getY(last));
+					turn.removeLast();
 				}
+				startIndex = -1;
 				continue;
 			}
 			
 			//Choose tile position and place tile
 			
-			//Highlight valid moves
-			ArrayList<Move> moves = null;
-			if (tilesPlaced > 0) {
-				moves = hand.findMoves(index, index, board, tilesPlaced);
-				highlightValidMoves(moves, screen, graphics);
+			//Highlight valid moves, unless this is hard mode and you find your own moves!
+			if (aiDifficulty < AiPlayer.HARD) {
+				findValidMoves(hand, index, board, turn, validMoves);
+				highlightValidMoves(validMoves);
 			}
 			
-			printMessage(screen, graphics, "Place tile on board. Arrow keys + Enter to choose, Esc to go back");
+			printMessage("Place tile on board. Arrow keys + Enter to choose, Esc to go back");
 			key = null;
-			int x = board.getXMax() / 2;
-			int y = board.getYMax() / 2;
+			int x = renderer.getCenterX();
+			int y = renderer.getCenterY();
+			if (turn.size() > 0) {
+				x = turn.getX(turn.size() - 1);
+				y = turn.getY(turn.size() - 1);
+			}
 			while (key == null || (key.getKeyType() != KeyType.Enter && key.getKeyType() != KeyType.Escape)) {
-				showMapCursor(x, y, index, hand, screen, graphics);
-				key = terminal.readInput();
-				if (key.getKeyType() == KeyType.ArrowUp && y > 1) 
-					hideMapCursor(x, y--, board, hand, moves, screen, graphics);
-				else if (key.getKeyType() == KeyType.ArrowDown && y < board.getYMax() - 2) 
-					hideMapCursor(x, y++, board, hand, moves, screen, graphics);
-				else if (key.getKeyType() == KeyType.ArrowLeft && x > 1) 
-					hideMapCursor(x--, y, board, hand, moves, screen, graphics);
-				else if (key.getKeyType() == KeyType.ArrowRight && x < board.getXMax() - 2) 
-					hideMapCursor(x++, y, board, hand, moves, screen, graphics);
-				else if (key.getKeyType() == KeyType.Enter && !hand.isValidMove(x, y, hand.getTile(index), board, tilesPlaced)) {
-					printMessage(screen, graphics, "Invalid move. Try again. Arrow keys + Enter to choose, Esc to go back");
+				
+				//Scroll the view if the cursor left it
+				renderer.scrollTo(x, y);
+				
+				renderer.setMapCursor(x, y, hand.getTileCode(index));
+				key = readKey(terminal);
+				if (key.getKeyType() == KeyType.ArrowUp)
+					y--;
+				else if (key.getKeyType() == KeyType.ArrowDown)
+					y++;
+				else if (key.getKeyType() == KeyType.ArrowLeft)
+					x--;
+				else if (key.getKeyType() == KeyType.ArrowRight)
+					x++;
+				else if (key.getKeyType() == KeyType.Enter &&
+						(!hand.isValidMove(x, y, hand.getTile(index), board, tilesPlaced) || !GameEngine.fitsTurn(turn, x, y, board))) {
+					printMessage("Invalid move. Try again. Arrow keys + Enter to choose, Esc to go back");
 					key = null;
 				}
 			}
+			renderer.hideMapCursor();
+			renderer.clearHighlights();
 			
 			//Go back if escape is hit
 			if (key.getKeyType() == KeyType.Escape) {
-				hideMapCursor(x, y, board, hand, moves, screen, graphics);
-				unHighlightValidMoves(moves, screen, graphics);
 				startIndex = index;
 				continue;
 			}
 			
-			//Place Tile and increment score
-			board.placeTile(hand.removeTile(index), x, y);
-			turn.add(new Move(hand.getTile(index), index, x, y));
+			//Place Tile
+			int code = hand.removeTileCode(index);
+			board.placeTileCode(code, x, y);
+			turn.add(code, index, x, y);
 			tilesPlaced++;
-			hand.addToScore(hand.getMoveScore(x, y, board)); //remove later
-		
-			isSpace = true; //remove later
+			renderer.markCell(x, y);
+			startIndex = -1;
 		}
-
-		//Tile(s) placed successfully
-		return true;
+		
+		//Put the tiles back, the game places and scores them
+		for (int i = turn.size() - 1; i >= 0; i--)
+			hand.addTileCode(turn.getIndex(i), board.removeTileCode(turn.getX(i), turn.getY(i)));
+		
+		return turn;
 	}
 	
-	private static int incrementHandCursor(Hand hand, int givenIndex, int dir, boolean[] toSwap, TextGraphics graphics) {
+	/**
+	 * Moves the hand cursor to the next tile in a direction
+	 * @return new index of the cursor
+	 */
+	private static int incrementHandCursor(Hand hand, int givenIndex, int dir) {
 		int index = givenIndex;
 		
 		//Skip over null values
@@ -430,64 +414,21 @@ public class Qwirkle {
 		if (index + increment < 0 || index + increment >= hand.getHandLength())
 			increment = 0;
 		
-		if (increment != 0) {
-			if (toSwap == null || (toSwap != null && toSwap[index] == false)) //Don't hide cursor if set to swap
-				hideHandCursor(index, hand, graphics);
-			index += increment;
-			setHandCursor(index, hand, graphics);
-		}
+		index += increment;
+		renderer.setHandCursor(index);
 		
 		return index;
 	}
 	
-	private static void hideHandCursor(int index, Hand hand, TextGraphics graphics) {
-		graphics.setBackgroundColor(TextColor.ANSI.BLACK);
-		graphics.setForegroundColor(hand.getTile(index).getTextColor());
-		graphics.setCharacter(35 + (index * 2), 22, hand.getTile(index).getSymbol());
-	}
-	
-	private static void setHandCursor(int index, Hand hand, TextGraphics graphics) {
-		graphics.setBackgroundColor(TextColor.ANSI.WHITE);
-		graphics.setForegroundColor(hand.getTile(index).getTextColor());
-		graphics.setCharacter(35 + (index * 2), 22, hand.getTile(index).getSymbol());
-	}
-	
-	private static void showMapCursor(int x, int y, int index, Hand hand, Screen screen, TextGraphics graphics) throws IOException {
-		graphics.setBackgroundColor(TextColor.ANSI.WHITE);
-		graphics.setForegroundColor(hand.getTile(index).getTextColor());
-		graphics.setCharacter(x, y+1, hand.getTile(index).getSymbol());
-		screen.refresh();
-		
-	}
-	
-	private static void hideMapCursor(int x, int y, Board board, Hand hand, ArrayList<Move> moves, Screen screen, TextGraphics graphics) throws IOException {
-		graphics.setBackgroundColor(TextColor.ANSI.BLACK);
-		
-		if (board.getTile(x, y) != null) {
-			graphics.setForegroundColor(board.getTile(x, y).getTextColor());
-			graphics.setCharacter(x, y+1, board.getTileSymbol(x, y));
-		}
-		else {
-			graphics.setForegroundColor(TextColor.ANSI.WHITE);
-			graphics.setCharacter(x, y+1, ' ');
-		}
-		
-		//Highlight valid moves
-		if (tilesPlaced > 0)
-			highlightValidMoves(moves, screen, graphics);
-		
-	}
-	
 	/**
-	 * User swaps tiles
+	 * User chooses tiles to swap
 	 * @param hand hand of the user or computer
 	 * @param deck the game deck
 	 * @param terminal
-	 * @param screen
-	 * @param graphics
+	 * @return true for each hand index to swap, null if the user went back
 	 * @throws IOException
 	 */
-	private static boolean swapTiles(Hand hand, Deck deck, Terminal terminal, Screen screen, TextGraphics graphics) throws IOException {
+	private static boolean[] swapTiles(Hand hand, Deck deck, Terminal terminal) throws IOException {
 		
 		//Initialize toSwap array
 		boolean[] toSwap = new boolean[hand.getHandLength()];
@@ -502,35 +443,21 @@ public class Qwirkle {
 		}
 		
 		//Choose tiles to swap
-		setHandCursor(index, hand, graphics);
-		screen.refresh();
-		printMessage(screen, graphics, "Choose tiles to swap. Arrow keys + Enter to choose, Space to swap, Esc to return");
+		renderer.setHandCursor(index);
+		renderer.setHandMarks(toSwap);
+		printMessage("Choose tiles to swap. Arrow keys + Enter to choose, Space to swap, Esc to return");
 		KeyStroke key = null;
 		boolean isSpace = false;
 		
 		//Loops until either space or escape is pushed
 		while (key == null || (key.getKeyType() != KeyType.Escape && !isSpace)) {
-			key = terminal.readInput();
-			if (key.getKeyType() == KeyType.ArrowRight && index < hand.getHandLength() - 1) {
-				index = incrementHandCursor(hand, index, 1, toSwap, graphics);
-				screen.refresh();
-			}
-			else if (key.getKeyType() == KeyType.ArrowLeft && index > 0) {
-				index = incrementHandCursor(hand, index, -1, toSwap, graphics);
-				screen.refresh();
-			}
-			else if (key.getKeyType() == KeyType.Enter) {
-				if (!toSwap[index]) {
-					toSwap[index] = true;
-					graphics.setBackgroundColor(TextColor.ANSI.WHITE);
-				}
-				else {
-					toSwap[index] = false;
-					graphics.setBackgroundColor(TextColor.ANSI.BLACK);
-				}
-				graphics.setForegroundColor(hand.getTile(index).getTextColor());
-				graphics.setCharacter(35 + (index * 2), 22, hand.getTile(index).getSymbol());
-			}
+			key = readKey(terminal);
+			if (key.getKeyType() == KeyType.ArrowRight && index < hand.getHandLength() - 1)
+				index = incrementHandCursor(hand, index, 1);
+			else if (key.getKeyType() == KeyType.ArrowLeft && index > 0)
+				index = incrementHandCursor(hand, index, -1);
+			else if (key.getKeyType() == KeyType.Enter)
+				toSwap[index] = !toSwap[index];
 			else if (key.getKeyType() == KeyType.Character && key.getCharacter() == ' ') {
 				int count = 0;
 				for (int i = 0; i < hand.getHandLength(); i++) {
@@ -540,23 +467,19 @@ public class Qwirkle {
 				if (count <= deck.getSize())
 					isSpace = true;
 				else
-					printMessage(screen, graphics, "Not enough tiles in deck.  Arrow + Enter to choose, Space to swap, Esc to return");
+					printMessage("Not enough tiles in deck.  Arrow + Enter to choose, Space to swap, Esc to return");
 			}
 		}
+		renderer.setHandCursor(-1);
+		renderer.setHandMarks(null);
 		
-		//If escape is hit, return false
+		//If escape is hit, return null
 		if (key.getKeyType() == KeyType.Escape)
-			return false;
+			return null;
 		
-		//Swap tiles
-		for (int i = 0; i < hand.getHandLength(); i++) {
-			if (toSwap[i])
-				hand.putTileInDeck(deck, i);
-		}
-		hand.fillHand(deck);
-		printMessage(screen, graphics, "Swapped");
-		
-		return true;
+		printMessage("Swapped");
 		
+		return toSwap;
+	
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,423 @@
+package qwirkle;
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.graphics.TextGraphics;
+import com.googlecode.lanterna.screen.Screen;
+
+/**
+ * Draws the game screen with Lanterna, only redrawing what changed.
+ * <p>
+ * The renderer remembers what each board cell, hand slot and status field shows on screen.
+ * Callers change what should be shown (the cursor, highlights, message) and mark the board
+ * cells that changed, then call frame once per input event.  frame compares the marked cells,
+ * the hand and the status fields with what is on screen, writes only the ones that differ,
+ * and refreshes the screen once.
+ * @author Gabriel Stackhouse
+ *
+ */
+public class Renderer {
+
+	//Size of the board view on screen, including its border
+	public static final int VIEW_WIDTH = 80;
+	public static final int VIEW_HEIGHT = 21;
+
+	//Cells inside the border
+	private static final int INNER_WIDTH = VIEW_WIDTH - 2;
+	private static final int INNER_HEIGHT = VIEW_HEIGHT - 2;
+	private static final int INNER_CELLS = INNER_WIDTH * INNER_HEIGHT;
+
+	private static final int HAND_X = 35;
+	private static final int HAND_Y = 22;
+	private static final int MESSAGE_Y = 23;
+
+	//What a cell or hand slot shows: a tile code, plus these flags
+	private static final int HIGHLIGHT = 1 << 8; //yellow circle on an empty cell
+	private static final int CURSOR = 1 << 9; //white background
+	private static final int UNKNOWN = -1; //not drawn yet, always differs
+
+	private Screen screen;
+	private TextGraphics graphics;
+
+	//Game being drawn
+	private Board board;
+	private Hand player;
+	private Hand computer;
+	private Deck deck;
+
+	//Board position drawn at the top left corner of the view.  The board has no edges,
+	//so the view scrolls when the cursor leaves it
+	private int viewX;
+	private int viewY;
+
+	//What should be shown, besides the game itself
+	private int cursorX, cursorY;
+	private int cursorCode = TileCode.EMPTY;
+	private int[] highlightKeys = new int[16];
+	private int highlightCount;
+	private boolean[] highlighted = new boolean[INNER_CELLS];
+	private int handCursor = -1;
+	private boolean[] handMarks;
+	private String message = "";
+
+	//What is shown on screen
+	private int[] shownCell = new int[INNER_CELLS];
+	private int[] shownHand = new int[6];
+	private int shownPlayerScore, shownComputerScore, shownDeckSize;
+	private String shownMessage;
+	private boolean shownFrame;
+
+	//Board cells to compare in the next frame
+	private int[] dirty = new int[INNER_CELLS];
+	private boolean[] isDirty = new boolean[INNER_CELLS];
+	private int dirtyCount;
+
+	/**
+	 * @param screen screen to draw on, already started
+	 */
+	public Renderer(Screen screen) {
+		this.screen = screen;
+		graphics = screen.newTextGraphics();
+		invalidate();
+	}
+
+	/**
+	 * Starts drawing a new game
+	 */
+	public void setGame(Board board, Hand player, Hand computer, Deck deck) {
+		this.board = board;
+		this.player = player;
+		this.computer = computer;
+		this.deck = deck;
+		cursorCode = TileCode.EMPTY;
+		handCursor = -1;
+		handMarks = null;
+		clearHighlights();
+		markAll();
+	}
+
+	/**
+	 * Forgets what is on screen, so the next frame draws everything
+	 */
+	public void invalidate() {
+		Arrays.fill(shownCell, UNKNOWN);
+		Arrays.fill(shownHand, UNKNOWN);
+		shownPlayerScore = shownComputerScore = shownDeckSize = UNKNOWN;
+		shownMessage = null;
+		shownFrame = false;
+		markAll();
+	}
+
+	/**
+	 * Marks a board cell as changed
+	 * @param x x position on board
+	 * @param y y position on board
+	 */
+	public void markCell(int x, int y) {
+		if (!isInView(x, y))
+			return;
+		int i = cellIndex(x, y);
+		if (!isDirty[i]) {
+			isDirty[i] = true;
+			dirty[dirtyCount++] = i;
+		}
+	}
+
+	/**
+	 * Marks the cells of a turn as changed
+	 * @param turn tiles placed
+	 */
+	public void markTurn(Turn turn) {
+		for (int i = 0; i < turn.size(); i++)
+			markCell(turn.getX(i), turn.getY(i));
+	}
+
+	/**
+	 * Marks every cell in the view as changed
+	 */
+	public void markAll() {
+		for (int i = 0; i < INNER_CELLS; i++) {
+			if (!isDirty[i]) {
+				isDirty[i] = true;
+				dirty[dirtyCount++] = i;
+			}
+		}
+	}
+
+	/**
+	 * Moves the view so a board position is in its center
+	 * @param x x position on board
+	 * @param y y position on board
+	 */
+	public void centerView(int x, int y) {
+		viewX = x - VIEW_WIDTH / 2;
+		viewY = y - VIEW_HEIGHT / 2;
+		updateHighlighted();
+		markAll();
+	}
+
+	/**
+	 * Centers the view on a board position if it is outside the view
+	 * @param x x position on board
+	 * @param y y position on board
+	 */
+	public void scrollTo(int x, int y) {
+		if (!isInView(x, y))
+			centerView(x, y);
+	}
+
+	/**
+	 * Checks if a board position is inside the border of the view
+	 */
+	public boolean isInView(int x, int y) {
+		return x - viewX >= 1 && x - viewX < VIEW_WIDTH - 1 && y - viewY >= 1 && y - viewY < VIEW_HEIGHT - 1;
+	}
+
+	/**
+	 * Returns the board position at the center of the view
+	 */
+	public int getCenterX() {
+		return viewX + VIEW_WIDTH / 2;
+	}
+
+	public int getCenterY() {
+		return viewY + VIEW_HEIGHT / 2;
+	}
+
+	/**
+	 * Shows a tile under the cursor on the board
+	 * @param x x position on board
+	 * @param y y position on board
+	 * @param code code of tile shown
+	 */
+	public void setMapCursor(int x, int y, int code) {
+		markCell(cursorX, cursorY);
+		cursorX = x;
+		cursorY = y;
+		cursorCode = code;
+		markCell(x, y);
+	}
+
+	public void hideMapCursor() {
+		markCell(cursorX, cursorY);
+		cursorCode = TileCode.EMPTY;
+	}
+
+	/**
+	 * Shows yellow circles on the cells of moves
+	 * @param moves moves to highlight
+	 */
+	public void setHighlights(MoveList moves) {
+		clearHighlights();
+		if (highlightKeys.length < moves.size())
+			highlightKeys = new int[moves.size() * 2];
+		for (int i = 0; i < moves.size(); i++) {
+			highlightKeys[i] = Board.cellKey(moves.getX(i), moves.getY(i));
+			markCell(moves.getX(i), moves.getY(i));
+		}
+		highlightCount = moves.size();
+		updateHighlighted();
+	}
+
+	public void clearHighlights() {
+		for (int i = 0; i < highlightCount; i++)
+			markCell(Board.cellX(highlightKeys[i]), Board.cellY(highlightKeys[i]));
+		highlightCount = 0;
+		updateHighlighted();
+	}
+
+	/**
+	 * Shows the cursor on a hand slot
+	 * @param index index of slot, -1 to hide the cursor
+	 */
+	public void setHandCursor(int index) {
+		handCursor = index;
+	}
+
+	/**
+	 * Shows hand slots as selected, like the cursor
+	 * @param marks true for each selected slot, read every frame; null for none
+	 */
+	public void setHandMarks(boolean[] marks) {
+		handMarks = marks;
+	}
+
+	/**
+	 * Sets the message on the bottom of the screen
+	 * @param message message to show
+	 */
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+	/**
+	 * Draws everything that changed since the last frame, then refreshes the screen
+	 * @throws IOException
+	 */
+	public void frame() throws IOException {
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		boolean fullBoard = dirtyCount == INNER_CELLS;
+		Tracing.BoardRefresh event = fullBoard ? Tracing.INSTANCE.beginBoardRefresh() : null;
+		int cellsDrawn = 0;
+		boolean changed = false;
+
+		if (!shownFrame) {
+			drawFrame();
+			shownFrame = true;
+			changed = true;
+		}
+
+		//Board cells
+		for (int d = 0; d < dirtyCount; d++) {
+			int i = dirty[d];
+			isDirty[i] = false;
+			int x = viewX + 1 + i % INNER_WIDTH;
+			int y = viewY + 1 + i / INNER_WIDTH;
+			int cell = getCell(x, y, i);
+			if (cell != shownCell[i]) {
+				drawCell(1 + i % INNER_WIDTH, 2 + i / INNER_WIDTH, cell);
+				shownCell[i] = cell;
+				cellsDrawn++;
+				changed = true;
+			}
+		}
+		dirtyCount = 0;
+
+		//Hand
+		for (int i = 0; i < shownHand.length; i++) {
+			int slot = player == null ? TileCode.EMPTY : player.getTileCode(i);
+			if (i == handCursor || (handMarks != null && handMarks[i]))
+				slot |= CURSOR;
+			if (slot != shownHand[i]) {
+				drawSlot(HAND_X + i * 2, HAND_Y, slot);
+				shownHand[i] = slot;
+				changed = true;
+			}
+		}
+
+		//Scores, deck and message
+		if (player != null) {
+			changed |= drawNumber(14, 0, player.getScore(), shownPlayerScore);
+			shownPlayerScore = player.getScore();
+			changed |= drawNumber(77, 0, computer.getScore(), shownComputerScore);
+			shownComputerScore = computer.getScore();
+			changed |= drawNumber(77, HAND_Y, deck.getSize(), shownDeckSize);
+			shownDeckSize = deck.getSize();
+		}
+		if (!message.equals(shownMessage)) {
+			drawMessage();
+			shownMessage = message;
+			changed = true;
+		}
+
+		if (changed)
+			screen.refresh();
+		if (Metrics.ENABLED)
+			Metrics.frame(start);
+		if (event != null)
+			event.record(cellsDrawn, changed);
+	}
+
+	/**
+	 * Returns what a board cell should show
+	 */
+	private int getCell(int x, int y, int index) {
+		if (cursorCode != TileCode.EMPTY && x == cursorX && y == cursorY)
+			return cursorCode | CURSOR;
+		int code = board == null ? TileCode.EMPTY : board.getTileCode(x, y);
+		if (code != TileCode.EMPTY)
+			return code;
+		return highlighted[index] ? HIGHLIGHT : TileCode.EMPTY;
+	}
+
+	private int cellIndex(int x, int y) {
+		return (y - viewY - 1) * INNER_WIDTH + (x - viewX - 1);
+	}
+
+	/**
+	 * Recomputes which cells in the view are highlighted
+	 */
+	private void updateHighlighted() {
+		Arrays.fill(highlighted, false);
+		for (int i = 0; i < highlightCount; i++) {
+			int x = Board.cellX(highlightKeys[i]);
+			int y = Board.cellY(highlightKeys[i]);
+			if (isInView(x, y))
+				highlighted[cellIndex(x, y)] = true;
+		}
+	}
+
+	/**
+	 * Draws the labels and the border of the view
+	 */
+	private void drawFrame() {
+		graphics.setBackgroundColor(TextColor.ANSI.BLACK);
+		graphics.setForegroundColor(TextColor.ANSI.WHITE);
+		graphics.putString(0, 0, "Player Score: ");
+		graphics.putString(61, 0, "Computer Score: ");
+		graphics.putString(37, 0, "Qwirkle");
+		graphics.putString(71, HAND_Y, "Deck: ");
+
+		graphics.drawLine(0, 1, VIEW_WIDTH - 1, 1, '-');
+		graphics.drawLine(0, VIEW_HEIGHT, VIEW_WIDTH - 1, VIEW_HEIGHT, '-');
+		graphics.drawLine(0, 2, 0, VIEW_HEIGHT - 1, '|');
+		graphics.drawLine(VIEW_WIDTH - 1, 2, VIEW_WIDTH - 1, VIEW_HEIGHT - 1, '|');
+	}
+
+	private void drawCell(int column, int row, int cell) {
+		graphics.setBackgroundColor((cell & CURSOR) != 0 ? TextColor.ANSI.WHITE : TextColor.ANSI.BLACK);
+		int code = cell & 0xFF;
+		if (code != TileCode.EMPTY) {
+			graphics.setForegroundColor(Tile.of(code).getTextColor());
+			graphics.setCharacter(column, row, TileCode.symbol(code));
+		}
+		else if ((cell & HIGHLIGHT) != 0) {
+			graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+			graphics.setCharacter(column, row, 'O');
+		}
+		else {
+			graphics.setForegroundColor(TextColor.ANSI.WHITE);
+			graphics.setCharacter(column, row, ' ');
+		}
+	}
+
+	private void drawSlot(int column, int row, int slot) {
+		int code = slot & 0xFF;
+		if (code == TileCode.EMPTY) {
+			graphics.setBackgroundColor(TextColor.ANSI.BLACK);
+			graphics.setForegroundColor(TextColor.ANSI.WHITE);
+			graphics.setCharacter(column, row, 'X');
+		}
+		else
+			drawCell(column, row, slot);
+	}
+
+	/**
+	 * Draws a number over the last one drawn there
+	 * @return true if anything was drawn
+	 */
+	private boolean drawNumber(int column, int row, int value, int shown) {
+		if (value == shown)
+			return false;
+		String text = "" + value;
+		String old = shown == UNKNOWN ? "" : "" + shown;
+		while (text.length() < old.length())
+			text += " ";
+		graphics.setBackgroundColor(TextColor.ANSI.BLACK);
+		graphics.setForegroundColor(TextColor.ANSI.WHITE);
+		graphics.putString(column, row, text);
+		return true;
+	}
+
+	private void drawMessage() {
+		String text = message;
+		int width = shownMessage == null ? screen.getTerminalSize().getColumns() : shownMessage.length();
+		StringBuilder padded = new StringBuilder(text);
+		while (padded.length() < width)
+			padded.append(' ');
+		graphics.setBackgroundColor(TextColor.ANSI.BLACK);
+		graphics.setForegroundColor(TextColor.ANSI.WHITE);
+		graphics.putString(0, MESSAGE_Y, padded.toString());
+	}
+}
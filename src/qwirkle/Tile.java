@@ -3,44 +3,81 @@ import java.awt.Color;
 
 import com.googlecode.lanterna.TextColor;
 
+/**
+ * A view of a packed tile code (see TileCode) for the user interface
+ * @author Gabriel Stackhouse
+ *
+ */
 public class Tile {
 
-	private char symbol;
-	private Color color;
-	
+	//One shared view per code, so the engine can hand out tiles without allocating
+	private static final Tile[] VIEWS = new Tile[TileCode.MAX_CODE];
+
+	static {
+		for (int code = 0; code < TileCode.MAX_CODE; code++) {
+			if (TileCode.kind(code) >= 0 && TileCode.kind(code) < TileCode.KINDS)
+				VIEWS[code] = new Tile(code);
+		}
+	}
+
+	private int code;
+
 	public Tile(char symbol, Color color) {
-		this.symbol = symbol;
-		this.color = color;
+		this(TileCode.encode(TileCode.colorOf(color), TileCode.shapeOf(symbol), 0));
+	}
+
+	private Tile(int code) {
+		this.code = code;
+	}
+
+	/**
+	 * Returns the view of a tile code
+	 * @param code tile code
+	 * @return tile, null if code is EMPTY
+	 */
+	public static Tile of(int code) {
+		if (code == TileCode.EMPTY)
+			return null;
+		return VIEWS[code];
+	}
+
+	/**
+	 * Returns the code of a tile
+	 * @param tile tile, may be null
+	 * @return tile code, EMPTY if tile is null
+	 */
+	public static int codeOf(Tile tile) {
+		if (tile == null)
+			return TileCode.EMPTY;
+		return tile.code;
 	}
-	
+
+	public int getCode() {
+		return code;
+	}
+
 	public char getSymbol() {
-		return symbol;
+		return TileCode.symbol(code);
 	}
-	
+
 	public Color getColor() {
-		return color;
+		return TileCode.awtColor(code);
 	}
-	
+
 	public TextColor getTextColor() {
-		if (color.equals(Color.orange)) {
-			TextColor.RGB textColor = new TextColor.RGB(255, 153, 0);
-			return textColor;
-		}
-		else if (color.equals(Color.magenta))
-			return TextColor.ANSI.MAGENTA;
-		else if (color.equals(Color.yellow))
-			return TextColor.ANSI.YELLOW;
-		else if (color.equals(Color.red)) 
-			return TextColor.ANSI.RED;
-		else if (color.equals(Color.blue)) 
-			return TextColor.ANSI.CYAN;
-		else
-			return TextColor.ANSI.GREEN;
-	}
-	
+		return TextColors.TABLE[TileCode.color(code)];
+	}
+
 	public String toString() {
-		return color.toString() + " " + symbol;
+		return getColor().toString() + " " + getSymbol();
 	}
-	
-	
+
+	//Only loaded by getTextColor, so the engine runs without Lanterna on the classpath
+	private static class TextColors {
+		static final TextColor[] TABLE =
+			{new TextColor.RGB(255, 153, 0), TextColor.ANSI.MAGENTA, TextColor.ANSI.YELLOW,
+			 TextColor.ANSI.RED,             TextColor.ANSI.GREEN,   TextColor.ANSI.CYAN
+			};
+	}
+
 }
@@ -0,0 +1,185 @@
+package qwirkle;
+import java.awt.Color;
+
+/**
+ * Packs a tile into a small int so the rules engine can work on primitives.
+ * <p>
+ * A tile's kind is its color index * 6 + its shape index (36 kinds), stored in the
+ * low 6 bits as kind + 1 so that 0 can mean "no tile".  The copy id (0-2, there are
+ * three of each kind in the deck) is stored above that.
+ * @author Gabriel Stackhouse
+ *
+ */
+public final class TileCode {
+
+	/** Code for an empty cell or hand slot */
+	public static final int EMPTY = 0;
+
+	public static final int COLORS = 6;
+	public static final int SHAPES = 6;
+	public static final int KINDS = COLORS * SHAPES;
+	public static final int COPIES = 3;
+
+	/** One past the largest possible code, for tables indexed by code */
+	public static final int MAX_CODE = COPIES << 6;
+
+	/** Bit mask of all 36 kinds */
+	public static final long ALL_KINDS = (1L << KINDS) - 1;
+
+	static final char[] SYMBOLS = {'@', '#', '$', '%', '&', '*'};
+	static final String COLOR_LETTERS = "OMYRGB";
+	static final Color[] AWT_COLORS =
+		{Color.orange, Color.magenta, Color.yellow,
+		 Color.red,    Color.green,   Color.blue
+		};
+
+	private static final int[] COLOR_OF = new int[MAX_CODE];
+	private static final int[] SHAPE_OF = new int[MAX_CODE];
+	private static final long[] COLOR_MASK = new long[COLORS];
+	private static final long[] SHAPE_MASK = new long[SHAPES];
+
+	static {
+		for (int code = 0; code < MAX_CODE; code++) {
+			int kind = (code & 0x3F) - 1;
+			if (kind >= 0 && kind < KINDS) {
+				COLOR_OF[code] = kind / SHAPES;
+				SHAPE_OF[code] = kind % SHAPES;
+			}
+			else {
+				COLOR_OF[code] = -1;
+				SHAPE_OF[code] = -1;
+			}
+		}
+		for (int kind = 0; kind < KINDS; kind++) {
+			COLOR_MASK[kind / SHAPES] |= 1L << kind;
+			SHAPE_MASK[kind % SHAPES] |= 1L << kind;
+		}
+	}
+
+	private TileCode() {
+	}
+
+	/**
+	 * Packs a tile
+	 * @param color color index (0-5)
+	 * @param shape shape index (0-5)
+	 * @param copy copy id (0-2)
+	 * @return tile code
+	 */
+	public static int encode(int color, int shape, int copy) {
+		return (copy << 6) | (color * SHAPES + shape + 1);
+	}
+
+	/**
+	 * Returns the kind of a tile, ignoring which copy it is
+	 * @param code tile code
+	 * @return kind between 0 and 35, -1 if empty
+	 */
+	public static int kind(int code) {
+		return (code & 0x3F) - 1;
+	}
+
+	public static int color(int code) {
+		return COLOR_OF[code];
+	}
+
+	public static int shape(int code) {
+		return SHAPE_OF[code];
+	}
+
+	public static int copy(int code) {
+		return code >>> 6;
+	}
+
+	/**
+	 * Returns the code of the first copy of a kind
+	 * @param kind kind between 0 and 35
+	 * @return tile code
+	 */
+	public static int fromKind(int kind) {
+		return kind + 1;
+	}
+
+	/**
+	 * Returns a one bit mask for the tile's kind
+	 * @param code tile code (must not be EMPTY)
+	 * @return bit mask
+	 */
+	public static long bit(int code) {
+		return 1L << ((code & 0x3F) - 1);
+	}
+
+	/**
+	 * Returns a mask of all kinds with the given color
+	 * @param color color index
+	 * @return bit mask
+	 */
+	public static long colorMask(int color) {
+		return COLOR_MASK[color];
+	}
+
+	/**
+	 * Returns a mask of all kinds with the given shape
+	 * @param shape shape index
+	 * @return bit mask
+	 */
+	public static long shapeMask(int shape) {
+		return SHAPE_MASK[shape];
+	}
+
+	public static char symbol(int code) {
+		return SYMBOLS[SHAPE_OF[code]];
+	}
+
+	public static Color awtColor(int code) {
+		return AWT_COLORS[COLOR_OF[code]];
+	}
+
+	/**
+	 * Names a tile in text: its color's letter (O, M, Y, R, G, B) and its shape's symbol
+	 * @param code tile code (must not be EMPTY)
+	 * @return two character name, such as "R@"
+	 */
+	public static String name(int code) {
+		return "" + COLOR_LETTERS.charAt(COLOR_OF[code]) + SYMBOLS[SHAPE_OF[code]];
+	}
+
+	/**
+	 * Reads a tile name made by name
+	 * @param name two character name
+	 * @return kind between 0 and 35, -1 if not a tile name
+	 */
+	public static int parseKind(String name) {
+		if (name.length() != 2)
+			return -1;
+		int color = COLOR_LETTERS.indexOf(Character.toUpperCase(name.charAt(0)));
+		int shape = shapeOf(name.charAt(1));
+		return color < 0 || shape < 0 ? -1 : color * SHAPES + shape;
+	}
+
+	/**
+	 * Looks up the shape index of a symbol
+	 * @param symbol tile symbol
+	 * @return shape index, -1 if unknown
+	 */
+	public static int shapeOf(char symbol) {
+		for (int i = 0; i < SYMBOLS.length; i++) {
+			if (SYMBOLS[i] == symbol)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Looks up the color index of a color
+	 * @param color tile color
+	 * @return color index, -1 if unknown
+	 */
+	public static int colorOf(Color color) {
+		for (int i = 0; i < AWT_COLORS.length; i++) {
+			if (AWT_COLORS[i].equals(color))
+				return i;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,331 @@
+package qwirkle;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays many AI-vs-AI games across all cores and reports how each AI did.
+ * <p>
+ * Every game is dealt from its own seed, made from the tournament seed and the game number,
+ * so a tournament gives exactly the same results on any number of threads.  Expert and
+ * Master search a fixed amount of work each turn instead of a time budget, so this holds
+ * for them too, on any machine.  The two AIs
+ * swap seats every game, so neither gets the first move more often.  The games are split
+ * between the threads of a ForkJoinPool, and each batch counts its results in its own
+ * Results, which are only added together as the batches finish.  Games can be recorded
+ * to a game record file, which each batch appends to in one write.
+ * <p>
+ * Usage: Tournament games first second [seed] [threads] [file], where first and second
+ * are AI levels (0 Easy, 1 Moderate, 2 Hard, 3 Expert, 4 Master) and file is a game
+ * record file to append the games to (see GameReader)
+ * @author Gabriel Stackhouse
+ *
+ */
+public class Tournament {
+
+	//Games a task plays itself instead of splitting further
+	private static final int BATCH = 64;
+
+	//Work the Expert and Master AIs do per turn, about what their time budgets allow on one
+	//core, so their games don't depend on the machine's speed or load
+	private static final long EXPERT_NODES = 5000;
+	private static final long MASTER_PLAYOUTS = 2000;
+
+	private int firstLevel;
+	private int secondLevel;
+	private long seed;
+	private GameWriter writer;
+
+	/**
+	 * @param firstLevel AI level of the first AI
+	 * @param secondLevel AI level of the second AI
+	 * @param seed tournament seed
+	 */
+	public Tournament(int firstLevel, int secondLevel, long seed) {
+		this.firstLevel = firstLevel;
+		this.secondLevel = secondLevel;
+		this.seed = seed;
+	}
+
+	/**
+	 * Records every game played from now on
+	 * @param writer writer to append the games to, null to stop recording
+	 */
+	public void setWriter(GameWriter writer) {
+		this.writer = writer;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.out.println("Usage: Tournament games first second [seed] [threads] [file]");
+			System.out.println("AI levels: 0 Easy, 1 Moderate, 2 Hard, 3 Expert, 4 Master");
+			return;
+		}
+
+		int games = Integer.parseInt(args[0]);
+		int first = Integer.parseInt(args[1]);
+		int second = Integer.parseInt(args[2]);
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+		Metrics.start();
+		Tournament tournament = new Tournament(first, second, seed);
+		GameWriter writer = args.length > 5 ? new GameWriter(Paths.get(args[5])) : null;
+		tournament.setWriter(writer);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long start = System.nanoTime();
+		Results results = tournament.play(pool, games);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		pool.shutdown();
+
+		System.out.printf("%s vs %s, %d games on %d threads, seed %d%n", new AiPlayer(first), new AiPlayer(second), games, threads, seed);
+		System.out.printf("Time %.2f s, %.1f games/sec%n%n", seconds, games / seconds);
+		results.print(new AiPlayer(first).toString(), new AiPlayer(second).toString());
+		if (writer != null) {
+			writer.close();
+			System.out.printf("%nRecorded %d games to %s%n", writer.getGamesWritten(), args[5]);
+		}
+		if (Metrics.ENABLED) {
+			System.out.println();
+			Metrics.print(System.out);
+		}
+	}
+
+	/**
+	 * Plays a number of games
+	 * @param pool pool to play the games in
+	 * @param games number of games
+	 * @return results of all the games
+	 */
+	public Results play(ForkJoinPool pool, int games) {
+		return pool.invoke(new Batch(0, games));
+	}
+
+	/**
+	 * Plays a range of games
+	 * @param from first game number
+	 * @param to one past the last game number
+	 * @return results of the games
+	 */
+	public Results play(int from, int to) {
+		Results results = new Results();
+		AiPlayer first = newPlayer(firstLevel);
+		AiPlayer second = newPlayer(secondLevel);
+		GameRecorder recorder = writer == null ? null : new GameRecorder();
+		for (int game = from; game < to; game++) {
+
+			//Odd games give the second AI the first move
+			boolean swapped = (game & 1) == 1;
+			GameEngine engine = swapped ? new GameEngine(second, first, gameSeed(seed, game))
+					: new GameEngine(first, second, gameSeed(seed, game));
+			engine.setRecorder(recorder);
+			engine.playGame();
+
+			int winner = engine.getWinner();
+			if (winner >= 0 && swapped)
+				winner = 1 - winner;
+			int firstScore = engine.getScore(swapped ? 1 : 0);
+			int secondScore = engine.getScore(swapped ? 0 : 1);
+			results.add(winner, firstScore, secondScore, engine.getTurnCount());
+		}
+
+		if (recorder != null) {
+			try {
+				writer.write(recorder);
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Makes an AI for the games.  Expert and Master search a fixed number of positions or
+	 * playouts instead of until a deadline, so the same seed gives the same games.  The
+	 * games already run on every core, so Master searches on the thread playing its game
+	 * @param level AI level
+	 * @return AI
+	 */
+	private static AiPlayer newPlayer(int level) {
+		if (level == AiPlayer.EXPERT)
+			return new AiPlayer(new ExpectimaxSearch(ExpectimaxSearch.DEFAULT_DEPTH, 0, EXPERT_NODES, new TranspositionTable(16)));
+		if (level == AiPlayer.MASTER)
+			return new AiPlayer(new MonteCarloSearch(0, 1, MASTER_PLAYOUTS));
+		return new AiPlayer(level);
+	}
+
+	/**
+	 * Makes the seed of one game, mixing the bits so nearby games get unrelated decks
+	 * @param seed tournament seed
+	 * @param game game number
+	 * @return seed of the game
+	 */
+	public static long gameSeed(long seed, int game) {
+		long z = seed + (game + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Splits its range of games in half until it is small enough to play
+	 */
+	private class Batch extends RecursiveTask<Results> {
+
+		private static final long serialVersionUID = 1L;
+
+		private int from;
+		private int to;
+
+		Batch(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Results compute() {
+			if (to - from <= BATCH)
+				return play(from, to);
+
+			int middle = (from + to) >>> 1;
+			Batch left = new Batch(from, middle);
+			left.fork();
+			Results results = new Batch(middle, to).compute();
+			results.add(left.join());
+			return results;
+		}
+	}
+
+	/**
+	 * Win counts and score distributions of a set of games, for the first and second AI
+	 */
+	public static class Results {
+
+		//Scores above this are counted as this
+		private static final int MAX_SCORE = 1023;
+
+		private long games;
+		private long[] wins = new long[2];
+		private long ties;
+		private long turns;
+		private long[][] scores = new long[2][MAX_SCORE + 1];
+
+		/**
+		 * Counts a game
+		 * @param winner 0 for the first AI, 1 for the second, -1 for a tie
+		 * @param firstScore final score of the first AI
+		 * @param secondScore final score of the second AI
+		 * @param turnCount number of turns played
+		 */
+		public void add(int winner, int firstScore, int secondScore, int turnCount) {
+			games++;
+			if (winner < 0)
+				ties++;
+			else
+				wins[winner]++;
+			turns += turnCount;
+			scores[0][Math.min(firstScore, MAX_SCORE)]++;
+			scores[1][Math.min(secondScore, MAX_SCORE)]++;
+		}
+
+		/**
+		 * Adds the counts of other games to these
+		 * @param other results to add
+		 */
+		public void add(Results other) {
+			games += other.games;
+			ties += other.ties;
+			turns += other.turns;
+			for (int ai = 0; ai < 2; ai++) {
+				wins[ai] += other.wins[ai];
+				for (int s = 0; s <= MAX_SCORE; s++)
+					scores[ai][s] += other.scores[ai][s];
+			}
+		}
+
+		public long getGames() {
+			return games;
+		}
+
+		/**
+		 * @param ai 0 for the first AI, 1 for the second
+		 * @return number of games won
+		 */
+		public long getWins(int ai) {
+			return wins[ai];
+		}
+
+		public long getTies() {
+			return ties;
+		}
+
+		public double getMeanTurns() {
+			return games == 0 ? 0 : turns / (double) games;
+		}
+
+		/**
+		 * @param ai 0 for the first AI, 1 for the second
+		 * @return mean final score
+		 */
+		public double getMeanScore(int ai) {
+			if (games == 0)
+				return 0;
+			long total = 0;
+			for (int s = 0; s <= MAX_SCORE; s++)
+				total += s * scores[ai][s];
+			return total / (double) games;
+		}
+
+		/**
+		 * @param ai 0 for the first AI, 1 for the second
+		 * @return standard deviation of the final score
+		 */
+		public double getScoreDeviation(int ai) {
+			if (games == 0)
+				return 0;
+			double mean = getMeanScore(ai);
+			double total = 0;
+			for (int s = 0; s <= MAX_SCORE; s++)
+				total += (s - mean) * (s - mean) * scores[ai][s];
+			return Math.sqrt(total / games);
+		}
+
+		/**
+		 * Returns the score that a fraction of games scored at or below
+		 * @param ai 0 for the first AI, 1 for the second
+		 * @param fraction between 0 and 1, 0.5 for the median
+		 * @return score
+		 */
+		public int getScorePercentile(int ai, double fraction) {
+			long rank = Math.max(1, (long) Math.ceil(fraction * games));
+			long count = 0;
+			for (int s = 0; s <= MAX_SCORE; s++) {
+				count += scores[ai][s];
+				if (count >= rank)
+					return s;
+			}
+			return MAX_SCORE;
+		}
+
+		/**
+		 * Prints a table of the results
+		 * @param firstName name of the first AI
+		 * @param secondName name of the second AI
+		 */
+		public void print(String firstName, String secondName) {
+			String[] names = {firstName, secondName};
+			System.out.printf("%-10s %8s %7s %7s %7s %5s %5s %5s %5s %5s%n", "", "Wins", "Win %", "Mean", "StdDev", "Min", "P10", "P50", "P90", "Max");
+			for (int ai = 0; ai < 2; ai++) {
+				System.out.printf("%-10s %8d %6.2f%% %7.1f %7.1f %5d %5d %5d %5d %5d%n", names[ai], wins[ai],
+						games == 0 ? 0 : 100.0 * wins[ai] / games, getMeanScore(ai), getScoreDeviation(ai),
+						getScorePercentile(ai, 0), getScorePercentile(ai, 0.1), getScorePercentile(ai, 0.5),
+						getScorePercentile(ai, 0.9), getScorePercentile(ai, 1));
+			}
+			System.out.printf("%-10s %8d %6.2f%%%n", "Ties", ties, games == 0 ? 0 : 100.0 * ties / games);
+			System.out.printf("Average turns per game: %.1f%n", getMeanTurns());
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package qwirkle;
+
+/**
+ * Hooks that let a profiler record what the engine does: AI turns, findMoves calls and
+ * full redraws of the board view.
+ * <p>
+ * The game is built for Java 8, which has no Flight Recorder API, so this class records
+ * nothing.  When the jfr folder is compiled (with Java 11 or later) and on the classpath,
+ * JfrTracing is loaded in its place and records each hook as a Flight Recorder event.  A
+ * begin method returns null unless its event will be recorded, so with nothing recording a
+ * hook costs one check and allocates nothing.
+ * @author Gabriel Stackhouse
+ *
+ */
+public class Tracing {
+
+	/** The tracing in use, JfrTracing if it could be loaded */
+	public static final Tracing INSTANCE = load();
+
+	/**
+	 * An AI turn being recorded
+	 */
+	public interface AiTurn {
+
+		/**
+		 * @return true if the turn lasted long enough to be recorded, so its details are wanted
+		 */
+		boolean shouldCommit();
+
+		void record(String strategy, long candidates, int depth, String turn, int score, int tilesPlaced);
+	}
+
+	/**
+	 * A findMoves call being recorded
+	 */
+	public interface FindMoves {
+
+		void record(int candidates, int moves, int tilesPlaced);
+	}
+
+	/**
+	 * A full redraw of the board view being recorded
+	 */
+	public interface BoardRefresh {
+
+		void record(int cellsDrawn, boolean refreshed);
+	}
+
+	protected Tracing() {
+	}
+
+	/**
+	 * Starts recording an AI turn
+	 * @return the turn's event, null if AI turns aren't being recorded
+	 */
+	public AiTurn beginAiTurn() {
+		return null;
+	}
+
+	/**
+	 * Starts recording a findMoves call
+	 * @return the call's event, null if findMoves calls aren't being recorded
+	 */
+	public FindMoves beginFindMoves() {
+		return null;
+	}
+
+	/**
+	 * Starts recording a full redraw of the board view
+	 * @return the redraw's event, null if redraws aren't being recorded
+	 */
+	public BoardRefresh beginBoardRefresh() {
+		return null;
+	}
+
+	private static Tracing load() {
+		try {
+			return (Tracing) Class.forName("qwirkle.JfrTracing").getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException | LinkageError e) {
+			return new Tracing();
+		}
+	}
+}
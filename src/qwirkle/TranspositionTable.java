@@ -0,0 +1,138 @@
+package qwirkle;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size cache of search results, keyed by Zobrist position keys, that several search
+ * threads can probe and store into at once without locking.
+ * <p>
+ * Each entry is two longs: the key XORed with the data, and the data.  A probe only accepts
+ * an entry if the two XOR back to its key, so an entry half written by another thread reads
+ * as a miss instead of a wrong result.  Entries are in buckets of two: the first keeps the
+ * deepest result from the current search, the second always takes the newest.
+ * <p>
+ * Data is packed into a long: score in the low 32 bits, then depth (8 bits), bound (2 bits),
+ * age (6 bits) and move (16 bits).
+ * @author Gabriel Stackhouse
+ *
+ */
+public class TranspositionTable {
+
+	/** Stored score is the exact value of the position */
+	public static final int EXACT = 1;
+	/** Stored score is a lower bound (the search was cut off above it) */
+	public static final int LOWER = 2;
+	/** Stored score is an upper bound */
+	public static final int UPPER = 3;
+
+	/** Returned by probe when the position isn't in the table */
+	public static final long MISS = 0;
+
+	/** Largest depth and move that can be stored */
+	public static final int MAX_DEPTH = 0xFF;
+	public static final int MAX_MOVE = 0xFFFF;
+
+	private static final int LONGS_PER_BUCKET = 4;
+
+	private final AtomicLongArray table;
+	private final int bucketMask;
+	private volatile int age = 0;
+
+	/**
+	 * Constructs a table with room for 2 ^ bits buckets of two entries (32 bytes a bucket)
+	 * @param bits log2 of number of buckets, 1 to 26
+	 */
+	public TranspositionTable(int bits) {
+		if (bits < 1 || bits > 26)
+			throw new IllegalArgumentException("bits must be 1 to 26: " + bits);
+		table = new AtomicLongArray(LONGS_PER_BUCKET << bits);
+		bucketMask = (1 << bits) - 1;
+	}
+
+	/**
+	 * Finds a position
+	 * @param key Zobrist key of the position
+	 * @return packed data (see getScore, getDepth, getBound, getMove), MISS if not found
+	 */
+	public long probe(long key) {
+		int base = bucket(key);
+		for (int i = 0; i < LONGS_PER_BUCKET; i += 2) {
+			long data = table.get(base + i + 1);
+			if (data != MISS && (table.get(base + i) ^ data) == key)
+				return data;
+		}
+		return MISS;
+	}
+
+	/**
+	 * Stores a search result.  The deeper-result entry is replaced if it holds this position,
+	 * a result no deeper than this one, or a result from an earlier search
+	 * @param key Zobrist key of the position
+	 * @param score score of the position
+	 * @param depth depth searched, 0 to MAX_DEPTH
+	 * @param bound EXACT, LOWER or UPPER
+	 * @param move index of best move, 0 to MAX_MOVE
+	 */
+	public void store(long key, int score, int depth, int bound, int move) {
+		long data = pack(score, Math.min(depth, MAX_DEPTH), bound, age, Math.min(move, MAX_MOVE));
+		int base = bucket(key);
+
+		long old = table.get(base + 1);
+		boolean replace = old == MISS || (table.get(base) ^ old) == key ||
+				getDepth(old) <= depth || getAge(old) != age;
+		int slot = replace ? base : base + 2;
+		table.lazySet(slot, key ^ data);
+		table.lazySet(slot + 1, data);
+	}
+
+	/**
+	 * Starts a new search, so results from earlier ones give way to new ones
+	 */
+	public void newSearch() {
+		age = (age + 1) & 0x3F;
+	}
+
+	/**
+	 * Empties the table
+	 */
+	public void clear() {
+		for (int i = 0; i < table.length(); i++)
+			table.set(i, 0);
+	}
+
+	/**
+	 * Returns the number of entries the table can hold
+	 * @return number of entries
+	 */
+	public int getCapacity() {
+		return table.length() / 2;
+	}
+
+	public static int getScore(long data) {
+		return (int) data;
+	}
+
+	public static int getDepth(long data) {
+		return (int) (data >>> 32) & 0xFF;
+	}
+
+	public static int getBound(long data) {
+		return (int) (data >>> 40) & 0x3;
+	}
+
+	public static int getMove(long data) {
+		return (int) (data >>> 48) & 0xFFFF;
+	}
+
+	private static int getAge(long data) {
+		return (int) (data >>> 42) & 0x3F;
+	}
+
+	private static long pack(int score, int depth, int bound, int age, int move) {
+		return (score & 0xFFFFFFFFL) | ((long) depth << 32) | ((long) bound << 40) |
+				((long) age << 42) | ((long) move << 48);
+	}
+
+	private int bucket(long key) {
+		return ((int) (key >>> 32) & bucketMask) * LONGS_PER_BUCKET;
+	}
+}
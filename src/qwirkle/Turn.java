@@ -0,0 +1,124 @@
+package qwirkle;
+
+/**
+ * A full turn: one or more tiles from a hand placed in a single row or column, and the
+ * score for placing all of them
+ * @author Gabriel Stackhouse
+ *
+ */
+public class Turn {
+
+	public static final int MAX_TILES = 6;
+
+	private int[] codes = new int[MAX_TILES];
+	private int[] tileIndex = new int[MAX_TILES];
+	private int[] x = new int[MAX_TILES];
+	private int[] y = new int[MAX_TILES];
+	private int size;
+	private int score;
+
+	/**
+	 * Constructs an empty turn
+	 */
+	public Turn() {
+		size = 0;
+		score = -1;
+	}
+
+	/**
+	 * Constructs a turn of a single move
+	 * @param move move to be made
+	 */
+	public Turn(Move move) {
+		this();
+		add(Tile.codeOf(move.getTile()), move.getIndex(), move.getX(), move.getY());
+		score = move.getScore();
+	}
+
+	/**
+	 * Adds a placement to the turn
+	 * @param code code of the tile to be placed
+	 * @param tileIndex index of the tile in hand
+	 * @param x location to be placed on x-axis
+	 * @param y location to be placed on y-axis
+	 */
+	public void add(int code, int tileIndex, int x, int y) {
+		codes[size] = code;
+		this.tileIndex[size] = tileIndex;
+		this.x[size] = x;
+		this.y[size] = y;
+		size++;
+	}
+
+	/**
+	 * Makes this turn a copy of another one
+	 * @param other turn to copy
+	 */
+	public void copy(Turn other) {
+		System.arraycopy(other.codes, 0, codes, 0, other.size);
+		System.arraycopy(other.tileIndex, 0, tileIndex, 0, other.size);
+		System.arraycopy(other.x, 0, x, 0, other.size);
+		System.arraycopy(other.y, 0, y, 0, other.size);
+		size = other.size;
+		score = other.score;
+	}
+
+	/**
+	 * Removes the last placement from the turn
+	 */
+	public void removeLast() {
+		if (size > 0)
+			size--;
+	}
+
+	public void clear() {
+		size = 0;
+		score = -1;
+	}
+
+	/**
+	 * Returns the number of tiles placed in the turn
+	 * @return number of tiles
+	 */
+	public int size() {
+		return size;
+	}
+
+	public Tile getTile(int i) {
+		return Tile.of(codes[i]);
+	}
+
+	public int getTileCode(int i) {
+		return codes[i];
+	}
+
+	public int getIndex(int i) {
+		return tileIndex[i];
+	}
+
+	public int getX(int i) {
+		return x[i];
+	}
+
+	public int getY(int i) {
+		return y[i];
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	public void setScore(int score) {
+		this.score = score;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			if (i > 0)
+				sb.append(", ");
+			sb.append(getTile(i).getSymbol()).append(" (").append(x[i]).append(", ").append(y[i]).append(")");
+		}
+		return sb.append(" = ").append(score).toString();
+	}
+}
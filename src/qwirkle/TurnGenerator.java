@@ -0,0 +1,359 @@
+package qwirkle;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Generates every full turn a hand can make: 1 to 6 tiles placed in a single row or column.
+ * <p>
+ * Each turn is built in exactly one order, so nothing is generated twice.  The first tile
+ * (the anchor) goes in a frontier cell, further tiles extend the line forward (right or down)
+ * past any tiles already there, and then backward.  Backward cells may not touch a tile that
+ * was on the board before the turn, so the anchor is always the first such cell in the line.
+ * Every placement is checked against the board's legal mask for its cell, which already
+ * accounts for the tiles placed earlier in the turn, so lines that can't match are cut off
+ * as soon as they are reached.
+ * <p>
+ * A generator keeps its buffers between calls, so it should be reused.  It is not thread safe.
+ * @author Gabriel Stackhouse
+ *
+ */
+public class TurnGenerator {
+
+	private static final int MAX_TILES = Turn.MAX_TILES;
+
+	private Board board;
+	private boolean firstMove;
+
+	//Hand being played from, slots are set to EMPTY as they are placed
+	private int[] hand = new int[MAX_TILES];
+	private long remainingKinds;
+
+	//Frontier when the generator started
+	private int[] anchors = new int[64];
+
+	//Tiles placed so far in the current turn
+	private int[] placedIndex = new int[MAX_TILES];
+	private int[] placedX = new int[MAX_TILES];
+	private int[] placedY = new int[MAX_TILES];
+	private int count;
+
+	//Direction of the line being built, and its first and last placed cells
+	private int dx, dy;
+	private int forwardX, forwardY;
+	private int backX, backY;
+
+	//Score of the lines crossing the placed tiles
+	private int crossScore;
+
+	//Output: either every turn, or only the best one
+	private ArrayList<Turn> turns;
+	private Turn best = new Turn();
+	private int generated;
+
+	//Generation stops early once past the deadline (System.nanoTime), checked every 256 turns.
+	//Volatile, so another thread can stop a generation by moving it into the past
+	private volatile long deadline = Long.MAX_VALUE;
+	private boolean stopped;
+
+	/**
+	 * Finds every turn the hand can make
+	 * @param hand hand of player
+	 * @param board game board
+	 * @param tilesPlaced number of tiles placed
+	 * @return ArrayList of turns, each with its score
+	 */
+	public ArrayList<Turn> findTurns(Hand hand, Board board, int tilesPlaced) {
+		ArrayList<Turn> result = new ArrayList<Turn>();
+		turns = result;
+		generate(hand, board, tilesPlaced);
+		turns = null;
+		return result;
+	}
+
+	/**
+	 * Finds the highest scoring turn the hand can make.  Ties go to the first turn found
+	 * @param hand hand of player
+	 * @param board game board
+	 * @param tilesPlaced number of tiles placed
+	 * @return best turn, null if no turn is possible
+	 */
+	public Turn findBestTurn(Hand hand, Board board, int tilesPlaced) {
+		best.clear();
+		generate(hand, board, tilesPlaced);
+		if (best.size() == 0)
+			return null;
+		Turn result = new Turn();
+		result.copy(best);
+		return result;
+	}
+
+	/**
+	 * Returns the number of turns found by the last search
+	 * @return number of turns
+	 */
+	public int getGenerated() {
+		return generated;
+	}
+
+	/**
+	 * Sets a time to stop generating by.  A few hands on long lines have many thousands of
+	 * turns, so a search with a deadline can't wait for all of them.  May be called from
+	 * another thread to stop a generation that is running
+	 * @param deadline System.nanoTime() to stop by, Long.MAX_VALUE for none
+	 */
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Returns whether the last search was stopped by the deadline, so only some of the turns
+	 * were found
+	 * @return true if stopped
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	/**
+	 * Scores a turn whose tiles are already on the board
+	 * @param board game board, with the turn's tiles on it
+	 * @param turn placed tiles
+	 * @return score of the turn
+	 */
+	public static int scoreTurn(Board board, Turn turn) {
+		if (turn.size() == 0)
+			return 0;
+
+		int x = turn.getX(0);
+		int y = turn.getY(0);
+		if (turn.size() == 1) {
+			int score = lineScore(board, x, y, 1, 0) + lineScore(board, x, y, 0, 1);
+			return score == 0 ? 1 : score;
+		}
+
+		//Main line once, plus the line crossing each tile
+		int dx = turn.getY(1) == y ? 1 : 0;
+		int dy = 1 - dx;
+		int score = lineScore(board, x, y, dx, dy);
+		for (int i = 0; i < turn.size(); i++)
+			score += lineScore(board, turn.getX(i), turn.getY(i), dy, dx);
+		return score;
+	}
+
+	/**
+	 * Scores the line through a tile in one direction.  A line of one tile scores nothing,
+	 * and a line of six (a Qwirkle) scores double
+	 */
+	static int lineScore(Board board, int x, int y, int dx, int dy) {
+		int length = board.getRunLength(x, y, dx, dy);
+		if (length == 1)
+			return 0;
+		if (length == 6)
+			return 12;
+		return length;
+	}
+
+	private void generate(Hand hand, Board board, int tilesPlaced) {
+		this.board = board;
+		generated = 0;
+		stopped = false;
+		count = 0;
+		crossScore = 0;
+		remainingKinds = 0;
+		for (int i = 0; i < MAX_TILES; i++) {
+			this.hand[i] = hand.getTileCode(i);
+			if (this.hand[i] != TileCode.EMPTY)
+				remainingKinds |= TileCode.bit(this.hand[i]);
+		}
+
+		//The first move of the game starts at the origin
+		firstMove = board.isEmpty();
+		int anchorCount;
+		if (firstMove) {
+			if (tilesPlaced > 0)
+				return;
+			anchors[0] = Board.cellKey(0, 0);
+			anchorCount = 1;
+		}
+		else {
+			//Copy the frontier, since placing tiles changes it
+			anchorCount = board.getFrontierSize();
+			if (anchors.length < anchorCount)
+				anchors = Arrays.copyOf(anchors, anchorCount * 2);
+			for (int i = 0; i < anchorCount; i++)
+				anchors[i] = Board.cellKey(board.getFrontierX(i), board.getFrontierY(i));
+		}
+
+		for (int a = 0; a < anchorCount && !stopped; a++) {
+			int x = Board.cellX(anchors[a]);
+			int y = Board.cellY(anchors[a]);
+			long legal = firstMove ? TileCode.ALL_KINDS : board.getLegalMask(x, y);
+			if ((legal & remainingKinds) == 0)
+				continue;
+
+			for (int axis = 0; axis < 2; axis++) {
+				dx = 1 - axis;
+				dy = axis;
+				long kinds = legal & remainingKinds;
+				while (kinds != 0) {
+					int slot = findSlot(Long.numberOfTrailingZeros(kinds));
+					kinds &= kinds - 1;
+
+					place(slot, x, y);
+					forwardX = backX = x;
+					forwardY = backY = y;
+
+					//A single tile is the same turn in either direction, only keep one
+					if (axis == 0)
+						emit();
+					extend(true);
+					unplace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tries to add another tile to each end of the line
+	 * @param forwardAllowed false once the line has been extended backward
+	 */
+	private void extend(boolean forwardAllowed) {
+		if (count == MAX_TILES || remainingKinds == 0 || stopped)
+			return;
+
+		if (forwardAllowed) {
+			int after = board.getRunAfter(forwardX, forwardY, dx, dy) + 1;
+			extendTo(forwardX + after * dx, forwardY + after * dy, true);
+		}
+
+		int before = board.getRunBefore(backX, backY, dx, dy) + 1;
+		int x = backX - before * dx;
+		int y = backY - before * dy;
+		if (!touchesOldTile(x, y))
+			extendTo(x, y, false);
+	}
+
+	private void extendTo(int x, int y, boolean forward) {
+		long kinds = board.getLegalMask(x, y) & remainingKinds;
+		while (kinds != 0) {
+			int slot = findSlot(Long.numberOfTrailingZeros(kinds));
+			kinds &= kinds - 1;
+
+			int oldX, oldY;
+			place(slot, x, y);
+			if (forward) {
+				oldX = forwardX;
+				oldY = forwardY;
+				forwardX = x;
+				forwardY = y;
+			}
+			else {
+				oldX = backX;
+				oldY = backY;
+				backX = x;
+				backY = y;
+			}
+
+			emit();
+			extend(forward);
+			unplace();
+
+			if (forward) {
+				forwardX = oldX;
+				forwardY = oldY;
+			}
+			else {
+				backX = oldX;
+				backY = oldY;
+			}
+		}
+	}
+
+	/**
+	 * Checks if a cell is next to a tile that was on the board before this turn
+	 */
+	private boolean touchesOldTile(int x, int y) {
+		if (firstMove)
+			return false;
+		return isOldTile(x - 1, y) || isOldTile(x + 1, y) || isOldTile(x, y - 1) || isOldTile(x, y + 1);
+	}
+
+	private boolean isOldTile(int x, int y) {
+		if (board.getTileCode(x, y) == TileCode.EMPTY)
+			return false;
+		for (int i = 0; i < count; i++) {
+			if (placedX[i] == x && placedY[i] == y)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds an unplaced hand slot holding a kind of tile
+	 */
+	private int findSlot(int kind) {
+		for (int i = 0; i < MAX_TILES; i++) {
+			if (hand[i] != TileCode.EMPTY && TileCode.kind(hand[i]) == kind)
+				return i;
+		}
+		return -1;
+	}
+
+	private void place(int slot, int x, int y) {
+		board.makeMove(hand[slot], x, y);
+		placedIndex[count] = slot;
+		placedX[count] = x;
+		placedY[count] = y;
+		count++;
+		hand[slot] = TileCode.EMPTY;
+		updateRemainingKinds();
+
+		//The line crossing the tile doesn't change as the rest of the turn is placed
+		crossScore += lineScore(board, x, y, dy, dx);
+	}
+
+	private void unplace() {
+		count--;
+		int x = placedX[count];
+		int y = placedY[count];
+		crossScore -= lineScore(board, x, y, dy, dx);
+		hand[placedIndex[count]] = board.getTileCode(x, y);
+		board.unmakeMove();
+		updateRemainingKinds();
+	}
+
+	private void updateRemainingKinds() {
+		remainingKinds = 0;
+		for (int i = 0; i < MAX_TILES; i++) {
+			if (hand[i] != TileCode.EMPTY)
+				remainingKinds |= TileCode.bit(hand[i]);
+		}
+	}
+
+	/**
+	 * Records the tiles placed so far as a turn
+	 */
+	private void emit() {
+		generated++;
+		if ((generated & 0xFF) == 0 && System.nanoTime() > deadline)
+			stopped = true;
+		int score = lineScore(board, backX, backY, dx, dy) + crossScore;
+		if (score == 0)
+			score = 1;
+
+		if (turns != null) {
+			Turn turn = new Turn();
+			fillTurn(turn, score);
+			turns.add(turn);
+		}
+		else if (score > best.getScore())
+			fillTurn(best, score);
+	}
+
+	private void fillTurn(Turn turn, int score) {
+		turn.clear();
+		for (int i = 0; i < count; i++)
+			turn.add(board.getTileCode(placedX[i], placedY[i]), placedIndex[i], placedX[i], placedY[i]);
+		turn.setScore(score);
+	}
+}
@@ -0,0 +1,60 @@
+package qwirkle;
+
+/**
+ * Zobrist keys for hashing a game position into a long.
+ * <p>
+ * A board's key is the XOR of a key for each (cell, kind) on it, so placing or removing a
+ * tile updates it with a single XOR.  The board has no fixed size, so cell keys are made by
+ * mixing the cell and kind rather than read from a table.  A hand's key is the sum of a key
+ * for each tile in it, since a hand can hold two tiles of a kind and XOR would cancel them.
+ * @author Gabriel Stackhouse
+ *
+ */
+public final class Zobrist {
+
+	/** XORed into a position's key when the second player is to move */
+	public static final long SIDE = mix(0x5EED5EED5EED5EEDL);
+
+	private static final long[] HAND = new long[TileCode.KINDS];
+
+	static {
+		for (int kind = 0; kind < TileCode.KINDS; kind++)
+			HAND[kind] = mix(0x1234567890ABCDEFL + kind);
+	}
+
+	private Zobrist() {
+	}
+
+	/**
+	 * Returns the key for a tile on a cell
+	 * @param x x index
+	 * @param y y index
+	 * @param code code of tile (see TileCode)
+	 * @return key, 0 for an empty cell
+	 */
+	public static long cell(int x, int y, int code) {
+		if (code == TileCode.EMPTY)
+			return 0;
+		return mix(((long) Board.cellKey(x, y) << 6) | TileCode.kind(code));
+	}
+
+	/**
+	 * Returns the key for a tile in a hand
+	 * @param code code of tile (see TileCode)
+	 * @return key, 0 for an empty slot
+	 */
+	public static long hand(int code) {
+		if (code == TileCode.EMPTY)
+			return 0;
+		return HAND[TileCode.kind(code)];
+	}
+
+	/**
+	 * Scrambles a long (the SplitMix64 finalizer), so that nearby cells get unrelated keys
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}